@@ -9,13 +9,21 @@ import android.graphics.drawable.Drawable
 import android.os.Parcel
 import android.os.Parcelable
 import android.os.Process
+import android.support.annotation.IntDef
 import android.support.v4.util.SimpleArrayMap
+import android.util.Log
+import android.util.LruCache
 import org.json.JSONArray
 import org.json.JSONObject
 import java.io.*
 import java.nio.ByteBuffer
 import java.nio.channels.FileChannel
+import java.security.MessageDigest
 import java.util.*
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicLong
 
@@ -29,13 +37,20 @@ import java.util.concurrent.atomic.AtomicLong
  */
 class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: Int) {
     private val mCacheManager: CacheManager
+    @Volatile
+    private var mMemoryCache: MemoryCache? = null
+    @Volatile
+    private var mWriter: CacheWriter? = null
+    private val mWriteLock = Any()
 
     /**
      * 获取缓存大小
      *
      * 单位：字节
      *
-     * 调用了 Thread.join()，需异步调用，否则可能主线程会卡顿
+     * 首次调用会等待索引加载完成，索引由日志顺序读取恢复，通常很快
+     *
+     * 异步写入时不包含尚未落盘的数据，需要准确值可先调用 [flush]
      *
      * @return 缓存大小
      */
@@ -45,13 +60,31 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
     /**
      * 获取缓存个数
      *
-     * 调用了 Thread.join()，需异步调用，否则可能主线程会卡顿
+     * 首次调用会等待索引加载完成，索引由日志顺序读取恢复，通常很快
+     *
+     * 异步写入时不包含尚未落盘的数据，需要准确值可先调用 [flush]
      *
      * @return 缓存个数
      */
     val cacheCount: Int
         get() = mCacheManager.getCacheCount()
 
+    /**
+     * 获取内存缓存命中次数
+     *
+     * @return 内存缓存命中次数
+     */
+    val memoryHitCount: Long
+        get() = mMemoryCache?.hitCount?.get() ?: 0
+
+    /**
+     * 获取内存缓存未命中次数
+     *
+     * @return 内存缓存未命中次数
+     */
+    val memoryMissCount: Long
+        get() = mMemoryCache?.missCount?.get() ?: 0
+
     init {
         if (!cacheDir.exists() && !cacheDir.mkdirs()) {
             throw RuntimeException("can't make dirs in " + cacheDir.absolutePath)
@@ -68,12 +101,24 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      */
     @JvmOverloads
     fun put(key: String, value: ByteArray, saveTime: Int = -1) {
-        var valueTemp = value
-        if (valueTemp.isEmpty()) return
-        if (saveTime >= 0) valueTemp = CacheHelper.newByteArrayWithTime(saveTime, valueTemp)
+        putBytes(key, value, saveTime, CacheHelper.TYPE_BYTES)
+    }
+
+    private fun putBytes(key: String, value: ByteArray, saveTime: Int, type: Int) {
+        if (value.isEmpty()) return
+        val dueTime = if (saveTime >= 0) System.currentTimeMillis() + saveTime * 1000L else -1L
+        val writer = mWriter
+        if (writer != null) {
+            writer.enqueue(key, value, dueTime, type)
+        } else {
+            writeToDisk(key, value, dueTime, type, true)
+        }
+        mMemoryCache?.remove(key)
+    }
+
+    private fun writeToDisk(key: String, value: ByteArray, dueTime: Long, type: Int, isForce: Boolean) {
         val file = mCacheManager.getFileBeforePut(key)
-        CacheHelper.writeFileFromBytes(file, valueTemp)
-        mCacheManager.updateModify(file)
+        CacheHelper.writeFileFromBytes(file, value, dueTime, type, isForce)
         mCacheManager.put(file)
     }
 
@@ -86,14 +131,56 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      */
     @JvmOverloads
     fun getBytes(key: String, defaultValue: ByteArray? = null): ByteArray? {
-        val file = mCacheManager.getFileIfExists(key) ?: return defaultValue
-        val data = CacheHelper.readFile2Bytes(file) ?: return defaultValue
-        if (CacheHelper.isDue(data)) {
+        val entry = getEntry(key) ?: return defaultValue
+        return entry.data
+    }
+
+    /**
+     * 读取缓存条目
+     *
+     * @param key 键
+     * @return 存在且没过期返回缓存条目，否则返回`null`
+     */
+    private fun getEntry(key: String): CacheEntry? {
+        val pending = mWriter?.getPending(key)
+        if (pending != null) return if (CacheHelper.isDue(pending.dueTime)) null else pending
+        val file = mCacheManager.getFileIfExists(key) ?: return null
+        val entry = CacheHelper.readEntry(file) ?: return null
+        if (CacheHelper.isDue(entry.dueTime)) {
             mCacheManager.removeByKey(key)
-            return defaultValue
+            return null
         }
         mCacheManager.updateModify(file)
-        return CacheHelper.getDataWithoutDueTime(data)
+        return entry
+    }
+
+    /**
+     * 读取解码后的对象，开启内存缓存时优先从内存读取
+     *
+     * @param key          键
+     * @param clazz        对象类型
+     * @param defaultValue 默认值
+     * @param decode       解码器
+     * @param sizeOf       对象占用内存的字节数
+     * @return 存在且没过期返回对应值，否则返回默认值`defaultValue`
+     */
+    private inline fun <T> getDecoded(key: String,
+                                      clazz: Class<T>,
+                                      defaultValue: T?,
+                                      decode: (ByteArray) -> T?,
+                                      sizeOf: (T, ByteArray) -> Int): T? {
+        val memoryCache = mMemoryCache
+        var generation = 0
+        if (memoryCache != null) {
+            val value = memoryCache.get(key, clazz)
+            if (value != null) return value
+            // 读盘前记录版本，期间有写入或移除时不再放入内存，避免旧值覆盖失效结果
+            generation = memoryCache.generation(key)
+        }
+        val entry = getEntry(key) ?: return defaultValue
+        val value = decode(entry.data) ?: return null
+        memoryCache?.put(key, value, entry.dueTime, sizeOf(value, entry.data), generation)
+        return value
     }
 
     /**
@@ -105,7 +192,7 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      */
     @JvmOverloads
     fun put(key: String, value: String, saveTime: Int = -1) {
-        put(key, CacheHelper.string2Bytes(value)!!, saveTime)
+        putBytes(key, CacheHelper.string2Bytes(value)!!, saveTime, CacheHelper.TYPE_STRING)
     }
 
     /**
@@ -117,8 +204,9 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      */
     @JvmOverloads
     fun getString(key: String, defaultValue: String? = null): String? {
-        val bytes = getBytes(key) ?: return defaultValue
-        return CacheHelper.bytes2String(bytes)
+        return getDecoded(key, String::class.java, defaultValue,
+                { CacheHelper.bytes2String(it) },
+                { value, _ -> value.length * 2 })
     }
 
     /**
@@ -132,7 +220,7 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
     fun put(key: String,
             value: JSONObject,
             saveTime: Int = -1) {
-        put(key, CacheHelper.jsonObject2Bytes(value)!!, saveTime)
+        putBytes(key, CacheHelper.jsonObject2Bytes(value)!!, saveTime, CacheHelper.TYPE_JSON_OBJECT)
     }
 
     /**
@@ -144,8 +232,9 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      */
     @JvmOverloads
     fun getJSONObject(key: String, defaultValue: JSONObject? = null): JSONObject? {
-        val bytes = getBytes(key) ?: return defaultValue
-        return CacheHelper.bytes2JSONObject(bytes)
+        return getDecoded(key, JSONObject::class.java, defaultValue,
+                { CacheHelper.bytes2JSONObject(it) },
+                { _, bytes -> bytes.size * 2 })
     }
 
     /**
@@ -157,7 +246,7 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      */
     @JvmOverloads
     fun put(key: String, value: JSONArray, saveTime: Int = -1) {
-        put(key, CacheHelper.jsonArray2Bytes(value)!!, saveTime)
+        putBytes(key, CacheHelper.jsonArray2Bytes(value)!!, saveTime, CacheHelper.TYPE_JSON_ARRAY)
     }
 
     /**
@@ -169,8 +258,9 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      */
     @JvmOverloads
     fun getJSONArray(key: String, defaultValue: JSONArray? = null): JSONArray? {
-        val bytes = getBytes(key) ?: return defaultValue
-        return CacheHelper.bytes2JSONArray(bytes)
+        return getDecoded(key, JSONArray::class.java, defaultValue,
+                { CacheHelper.bytes2JSONArray(it) },
+                { _, bytes -> bytes.size * 2 })
     }
 
     /**
@@ -182,7 +272,19 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      */
     @JvmOverloads
     fun put(key: String, value: Bitmap, saveTime: Int = -1) {
-        put(key, CacheHelper.bitmap2Bytes(value)!!, saveTime)
+        if (mWriter != null) {
+            putBytes(key, CacheHelper.bitmap2Bytes(value)!!, saveTime, CacheHelper.TYPE_BITMAP)
+            return
+        }
+        // 直接压缩到缓存文件，不经过内存中的字节数组
+        val os = openOutputStream(key, saveTime, CacheHelper.TYPE_BITMAP) ?: return
+        var success = false
+        try {
+            success = value.compress(Bitmap.CompressFormat.PNG, 100, os)
+        } finally {
+            // 压缩失败时丢弃临时文件，不写入只有文件头的条目
+            if (success) CloseUtils.closeIO(os) else os.abort()
+        }
     }
 
     /**
@@ -194,8 +296,9 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      */
     @JvmOverloads
     fun getBitmap(key: String, defaultValue: Bitmap? = null): Bitmap? {
-        val bytes = getBytes(key) ?: return defaultValue
-        return CacheHelper.bytes2Bitmap(bytes)
+        return getDecoded(key, Bitmap::class.java, defaultValue,
+                { CacheHelper.bytes2Bitmap(it) },
+                { value, _ -> value.byteCount })
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -209,7 +312,7 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      * @param value 值
      */
     fun put(key: String, value: Drawable) {
-        put(key, CacheHelper.drawable2Bytes(value)!!)
+        putBytes(key, CacheHelper.drawable2Bytes(value)!!, -1, CacheHelper.TYPE_DRAWABLE)
     }
 
     /**
@@ -220,7 +323,7 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      * @param saveTime 保存时长，单位：秒
      */
     fun put(key: String, value: Drawable, saveTime: Int) {
-        put(key, CacheHelper.drawable2Bytes(value)!!, saveTime)
+        putBytes(key, CacheHelper.drawable2Bytes(value)!!, saveTime, CacheHelper.TYPE_DRAWABLE)
     }
 
     /**
@@ -247,7 +350,7 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
     fun put(key: String,
             value: Parcelable,
             saveTime: Int = -1) {
-        put(key, CacheHelper.parcelable2Bytes(value)!!, saveTime)
+        putBytes(key, CacheHelper.parcelable2Bytes(value)!!, saveTime, CacheHelper.TYPE_PARCELABLE)
     }
 
     /**
@@ -288,7 +391,7 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
     fun put(key: String,
             value: Serializable,
             saveTime: Int = -1) {
-        put(key, CacheHelper.serializable2Bytes(value)!!, saveTime)
+        putBytes(key, CacheHelper.serializable2Bytes(value)!!, saveTime, CacheHelper.TYPE_SERIALIZABLE)
     }
 
     /**
@@ -304,6 +407,90 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
         return CacheHelper.bytes2Object(bytes)
     }
 
+    ///////////////////////////////////////////////////////////////////////////
+    // 流读写
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 打开缓存输出流
+     *
+     * 适合写入较大的数据，数据先写入临时文件，关闭流后才生效，生效前读取到的仍是旧值；
+     * 写入过程中出错则放弃本次写入
+     *
+     * @param key      键
+     * @param saveTime 保存时长，单位：秒
+     * @return 输出流，打开失败返回`null`
+     */
+    @JvmOverloads
+    fun openOutputStream(key: String, saveTime: Int = -1): OutputStream? {
+        return openOutputStream(key, saveTime, CacheHelper.TYPE_BYTES)
+    }
+
+    private fun openOutputStream(key: String, saveTime: Int, type: Int): CacheOutputStream? {
+        val dueTime = if (saveTime >= 0) System.currentTimeMillis() + saveTime * 1000L else -1L
+        val parent = mCacheManager.getFile(key).parentFile
+        if (!parent.exists() && !parent.mkdirs()) return null
+        var tmpFile: File? = null
+        var fos: FileOutputStream? = null
+        try {
+            tmpFile = File.createTempFile(CacheHelper.key2FileName(key), CacheHelper.TMP_SUFFIX, parent)
+            fos = FileOutputStream(tmpFile)
+            val header = CacheHelper.createHeader(dueTime, type)
+            while (header.hasRemaining()) {
+                fos.channel.write(header)
+            }
+            return CacheOutputStream(key, tmpFile!!, fos)
+        } catch (e: IOException) {
+            e.printStackTrace()
+            CloseUtils.closeIO(fos)
+            tmpFile?.delete()
+            return null
+        }
+    }
+
+    /**
+     * 打开缓存输入流
+     *
+     * 适合读取较大的数据，数据不会整体读入内存，使用完毕需关闭
+     *
+     * @param key 键
+     * @return 存在且没过期返回输入流，否则返回`null`
+     */
+    fun openInputStream(key: String): InputStream? {
+        val pending = mWriter?.getPending(key)
+        if (pending != null) {
+            return if (CacheHelper.isDue(pending.dueTime)) null else ByteArrayInputStream(pending.data)
+        }
+        val file = mCacheManager.getFileIfExists(key) ?: return null
+        var fis: FileInputStream? = null
+        try {
+            fis = FileInputStream(file)
+            val header = ByteBuffer.allocate(CacheHelper.HEADER_LEN)
+            while (header.hasRemaining()) {
+                if (fis.channel.read(header) < 0) break
+            }
+            header.flip()
+            if (CacheHelper.isHeader(header)) {
+                if (CacheHelper.isDue(CacheHelper.getHeaderDueTime(header))) {
+                    fis.close()
+                    mCacheManager.removeByKey(key)
+                    return null
+                }
+                mCacheManager.updateModify(file)
+                // 流的位置已在头部之后
+                return fis
+            }
+            fis.close()
+        } catch (e: IOException) {
+            e.printStackTrace()
+            CloseUtils.closeIO(fis)
+            return null
+        }
+        // 旧格式文件按原方式整体读取
+        val entry = getEntry(key) ?: return null
+        return ByteArrayInputStream(entry.data)
+    }
+
     /**
      * 根据键值移除缓存
      *
@@ -311,7 +498,12 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      * @return `true`: 移除成功<br></br>`false`: 移除失败
      */
     fun remove(key: String): Boolean {
-        return mCacheManager.removeByKey(key)
+        val flag = synchronized(mWriteLock) {
+            mWriter?.cancel(key)
+            mCacheManager.removeByKey(key)
+        }
+        mMemoryCache?.remove(key)
+        return flag
     }
 
     /**
@@ -320,71 +512,252 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
      * @return `true`: 清除成功<br></br>`false`: 清除失败
      */
     fun clear(): Boolean {
-        return mCacheManager.clear()
+        val flag = synchronized(mWriteLock) {
+            mWriter?.cancelAll()
+            mCacheManager.clear()
+        }
+        mMemoryCache?.evictAll()
+        return flag
+    }
+
+    /**
+     * 设置内存缓存大小
+     *
+     * 开启后 String、JSONObject、JSONArray、Bitmap 的读取结果会保存在内存中，
+     * 同一键的写入、移除以及清除缓存都会使其失效
+     *
+     * 命中内存时返回的是同一个对象，请勿修改或回收
+     *
+     * @param maxSize 内存缓存最大字节数，`0` 为关闭
+     */
+    fun setMemoryCacheSize(maxSize: Int) {
+        val old = mMemoryCache
+        mMemoryCache = if (maxSize > 0) MemoryCache(maxSize) else null
+        old?.evictAll()
+    }
+
+    /**
+     * 设置异步写入
+     *
+     * 开启后写入操作进入有界队列，由后台线程批量写盘，队列满时写入方阻塞；
+     * 尚未落盘的数据依然可以被读取到
+     *
+     * 切换时会等待原队列中的数据全部落盘后再替换，请在开始读写前设置
+     *
+     * @param asyncWrite 是否异步写入
+     * @param syncMode   刷盘方式
+     *
+     *  * [SYNC_EVERY_WRITE]: 每次写入后刷盘
+     *  * [SYNC_PERIODIC]   : 定期及调用 [flush] 时刷盘
+     *  * [SYNC_NONE]       : 不主动刷盘，由系统决定
+     *
+     * @param queueSize  队列大小
+     */
+    @JvmOverloads
+    fun setAsyncWrite(asyncWrite: Boolean,
+                      @SyncMode syncMode: Int = SYNC_PERIODIC,
+                      queueSize: Int = DEFAULT_QUEUE_SIZE) {
+        val old = mWriter
+        if (old != null) {
+            // 先落盘再替换，替换前读取仍能从原队列中读到未落盘的数据
+            old.shutdown()
+            old.drainRemaining()
+        }
+        mWriter = if (asyncWrite) CacheWriter(syncMode, queueSize) else null
+    }
+
+    /**
+     * 等待异步写入队列中已有的数据全部落盘，并将暂存的读取记录写入索引日志
+     *
+     * 读取记录只影响淘汰顺序，平时不单独刷盘，退出前可调用此方法保存
+     */
+    fun flush() {
+        mWriter?.flush()
+        mCacheManager.flushJournal()
     }
 
     inner class CacheManager constructor(val cacheDir: File, val sizeLimit: Long, val countLimit: Int) {
         private val cacheSize: AtomicLong = AtomicLong()
         private val cacheCount: AtomicInteger
-        private val lastUsageDates = Collections.synchronizedMap(HashMap<File, Long>())
+        // 按访问顺序排列的文件到大小映射，表头即最久未使用，淘汰为 O(1)
+        private val lruFileSizes = LinkedHashMap<File, Long>(16, 0.75f, true)
+        private val journal: CacheJournal = CacheJournal(cacheDir)
         private val mThread: Thread
 
         init {
             cacheCount = AtomicInteger()
             mThread = Thread(Runnable {
-                var size = 0
+                var size = 0L
                 var count = 0
-                val cachedFiles = cacheDir.listFiles()
-                if (cachedFiles != null) {
-                    for (cachedFile in cachedFiles) {
-                        size += cachedFile.length().toInt()
-                        count += 1
-                        lastUsageDates[cachedFile] = cachedFile.lastModified()
+                val entries = journal.read()
+                if (entries != null) {
+                    // 日志回放后的顺序即为访问顺序
+                    synchronized(lruFileSizes) {
+                        for ((name, entry) in entries) {
+                            size += entry[0]
+                            count += 1
+                            lruFileSizes[File(cacheDir, name)] = entry[0]
+                        }
+                    }
+                } else {
+                    // 日志不存在或已损坏，回退到全量扫描，并据此重建日志
+                    val cachedFiles = listCachedFiles()
+                    if (cachedFiles.isNotEmpty()) {
+                        val lastModifies = HashMap<File, Long>()
+                        val files = ArrayList<File>()
+                        for (cachedFile in cachedFiles) {
+                            lastModifies[cachedFile] = cachedFile.lastModified()
+                            files.add(cachedFile)
+                        }
+                        files.sortWith(Comparator { o1, o2 -> lastModifies[o1]!!.compareTo(lastModifies[o2]!!) })
+                        synchronized(lruFileSizes) {
+                            for (cachedFile in files) {
+                                val length = cachedFile.length()
+                                size += length
+                                count += 1
+                                lruFileSizes[cachedFile] = length
+                            }
+                        }
                     }
-                    cacheSize.getAndAdd(size.toLong())
-                    cacheCount.getAndAdd(count)
+                }
+                cacheSize.getAndAdd(size)
+                cacheCount.getAndAdd(count)
+                // 日志加载成功时在索引线程中与磁盘核对一次，有差异则重写日志
+                val reconciled = entries != null && reconcile()
+                if (entries == null || reconciled || journal.isRebuildRequired(cacheCount.get())) {
+                    rebuildJournal()
+                } else {
+                    journal.open()
                 }
             })
             mThread.start()
         }
 
-        fun getCacheSize(): Long {
+        private fun awaitIndex() {
             try {
                 mThread.join()
             } catch (e: InterruptedException) {
                 e.printStackTrace()
             }
+        }
 
+        fun getCacheSize(): Long {
+            awaitIndex()
             return cacheSize.get()
         }
 
         fun getCacheCount(): Int {
-            try {
-                mThread.join()
-            } catch (e: InterruptedException) {
-                e.printStackTrace()
-            }
-
+            awaitIndex()
             return cacheCount.get()
         }
 
+        /**
+         * 根据键获取缓存文件
+         *
+         * 文件名为键的 MD5，按前两位分散到 256 个子目录中
+         *
+         * @param key 键
+         * @return 缓存文件
+         */
+        fun getFile(key: String): File {
+            val name = CacheHelper.key2FileName(key)
+            return File(File(cacheDir, name.substring(0, 2)), name)
+        }
+
+        /**
+         * 根据键获取旧版本以 hashCode 命名的缓存文件
+         *
+         * @param key 键
+         * @return 旧版缓存文件
+         */
+        private fun getLegacyFile(key: String): File {
+            return File(cacheDir, key.hashCode().toString())
+        }
+
         fun getFileBeforePut(key: String): File {
-            val file = File(cacheDir, key.hashCode().toString())
-            if (file.exists()) {
+            awaitIndex()
+            val file = getFile(key)
+            val parent = file.parentFile
+            if (!parent.exists()) parent.mkdirs()
+            val size = synchronized(lruFileSizes) { lruFileSizes.remove(file) }
+            if (size != null) {
                 cacheCount.addAndGet(-1)
-                cacheSize.addAndGet(-file.length())
+                cacheSize.addAndGet(-size)
             }
+            // 旧版文件不删除的话，移除新文件后读取时会被迁移回来，返回旧值
+            val legacyFile = getLegacyFile(key)
+            if (!deleteIndexed(legacyFile)) Log.w("CacheUtils", "delete " + legacyFile + " failed")
             return file
         }
 
         fun getFileIfExists(key: String): File? {
-            val file = File(cacheDir, key.hashCode().toString())
-            return if (!file.exists()) null else file
+            val file = getFile(key)
+            if (file.exists()) return file
+            val legacyFile = getLegacyFile(key)
+            if (!legacyFile.exists()) return null
+            return if (migrate(legacyFile, file)) file else legacyFile
+        }
+
+        /**
+         * 将旧版缓存文件移动到新位置
+         *
+         * @param legacyFile 旧版缓存文件
+         * @param file       新缓存文件
+         * @return `true`: 移动成功<br></br>`false`: 移动失败
+         */
+        private fun migrate(legacyFile: File, file: File): Boolean {
+            awaitIndex()
+            val parent = file.parentFile
+            if (!parent.exists() && !parent.mkdirs()) return false
+            if (!legacyFile.renameTo(file)) return false
+            val size = file.length()
+            val legacySize = synchronized(lruFileSizes) {
+                val legacySize = lruFileSizes.remove(legacyFile)
+                lruFileSizes[file] = size
+                legacySize
+            }
+            if (legacySize == null) {
+                cacheCount.addAndGet(1)
+                cacheSize.addAndGet(size)
+            } else {
+                appendJournal(CacheJournal.REMOVE + " " + getRelativeName(legacyFile))
+            }
+            appendJournal(CacheJournal.PUT + " " + getRelativeName(file) + " " + size + " " + System.currentTimeMillis())
+            return true
+        }
+
+        private fun getRelativeName(file: File): String {
+            return if (file.parent == cacheDir.path) file.name else file.parentFile.name + "/" + file.name
+        }
+
+        /**
+         * 列出所有缓存文件，包括子目录中的文件和旧版本根目录下的文件
+         *
+         * @return 缓存文件
+         */
+        private fun listCachedFiles(): List<File> {
+            val list = ArrayList<File>()
+            val files = cacheDir.listFiles() ?: return list
+            for (file in files) {
+                if (file.isDirectory) {
+                    val children = file.listFiles() ?: continue
+                    children.filterTo(list) { !it.name.endsWith(CacheHelper.TMP_SUFFIX) }
+                } else if (!CacheJournal.isJournalFile(file)) {
+                    list.add(file)
+                }
+            }
+            return list
         }
 
         fun put(file: File) {
-            cacheCount.addAndGet(1)
-            cacheSize.addAndGet(file.length())
+            awaitIndex()
+            val size = file.length()
+            val millis = System.currentTimeMillis()
+            // 索引中已有同一文件时只更新大小，避免重复计数
+            val old = synchronized(lruFileSizes) { lruFileSizes.put(file, size) }
+            if (old == null) cacheCount.addAndGet(1)
+            cacheSize.addAndGet(size - (old ?: 0L))
+            appendJournal(CacheJournal.PUT + " " + getRelativeName(file) + " " + size + " " + millis)
             while (cacheCount.get() > countLimit || cacheSize.get() > sizeLimit) {
                 cacheSize.addAndGet(-removeOldest())
                 cacheCount.addAndGet(-1)
@@ -392,38 +765,66 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
         }
 
         fun updateModify(file: File) {
+            awaitIndex()
             val millis = System.currentTimeMillis()
-            file.setLastModified(millis)
-            lastUsageDates[file] = millis
+            // 访问顺序的 LinkedHashMap 在 get 时将其移至表尾
+            synchronized(lruFileSizes) { lruFileSizes[file] }
+            // 读取记录只影响淘汰顺序，不单独刷盘，随下一次写入、移除记录或缓冲区满时一起落盘
+            appendJournal(CacheJournal.READ + " " + getRelativeName(file) + " " + millis, false)
         }
 
         fun removeByKey(key: String): Boolean {
-            val file = getFileIfExists(key) ?: return true
-            if (!file.delete()) return false
-            cacheSize.addAndGet(-file.length())
-            cacheCount.addAndGet(-1)
-            lastUsageDates.remove(file)
+            awaitIndex()
+            // 新旧两个位置都要删除，否则旧版文件会在下次读取时被迁移回来
+            val flag = deleteIndexed(getFile(key))
+            return deleteIndexed(getLegacyFile(key)) && flag
+        }
+
+        /**
+         * 删除缓存文件并移出索引，文件存在或在索引中时记录日志
+         *
+         * @param file 缓存文件
+         * @return `true`: 删除成功或文件不存在<br></br>`false`: 删除失败
+         */
+        private fun deleteIndexed(file: File): Boolean {
+            val exists = file.exists()
+            if (exists && !file.delete()) return false
+            val size = synchronized(lruFileSizes) { lruFileSizes.remove(file) }
+            if (size != null) {
+                cacheSize.addAndGet(-size)
+                cacheCount.addAndGet(-1)
+            }
+            if (exists || size != null) appendJournal(CacheJournal.REMOVE + " " + getRelativeName(file))
             return true
         }
 
         fun clear(): Boolean {
-            val files = cacheDir.listFiles()
-            if (files == null || files.isEmpty()) return true
+            awaitIndex()
+            val files = listCachedFiles()
+            if (files.isEmpty()) return true
             var flag = true
             for (file in files) {
                 if (!file.delete()) {
                     flag = false
                     continue
                 }
-                cacheSize.addAndGet(-file.length())
-                cacheCount.addAndGet(-1)
-                lastUsageDates.remove(file)
+                val size = synchronized(lruFileSizes) { lruFileSizes.remove(file) }
+                if (size != null) {
+                    cacheSize.addAndGet(-size)
+                    cacheCount.addAndGet(-1)
+                }
             }
             if (flag) {
-                lastUsageDates.clear()
+                synchronized(lruFileSizes) { lruFileSizes.clear() }
                 cacheSize.set(0)
                 cacheCount.set(0)
+                // 连同未完成写入的临时文件一起删除
+                cacheDir.listFiles()?.filter { it.isDirectory }?.forEach { dir ->
+                    dir.listFiles()?.forEach { it.delete() }
+                    dir.delete()
+                }
             }
+            rebuildJournal()
             return flag
         }
 
@@ -433,56 +834,605 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
          * @return 移除的字节数
          */
         fun removeOldest(): Long {
-            if (lastUsageDates.isEmpty()) return 0
-            var oldestUsage: Long = java.lang.Long.MAX_VALUE
-            var oldestFile: File? = null
-            val entries = lastUsageDates.entries
-            synchronized(lastUsageDates) {
-                for ((key, lastValueUsage) in entries) {
-                    if (lastValueUsage < oldestUsage) {
-                        oldestUsage = lastValueUsage
-                        oldestFile = key
+            val oldestFile: File
+            val fileSize: Long
+            synchronized(lruFileSizes) {
+                val iterator = lruFileSizes.entries.iterator()
+                if (!iterator.hasNext()) return 0
+                val oldest = iterator.next()
+                oldestFile = oldest.key
+                fileSize = oldest.value
+                iterator.remove()
+            }
+            // 删除失败的文件也移出索引，避免淘汰循环反复命中同一文件，clear 时会再次尝试删除
+            if (!oldestFile.delete()) Log.w("CacheUtils", "delete " + oldestFile + " failed")
+            appendJournal(CacheJournal.REMOVE + " " + getRelativeName(oldestFile))
+            return fileSize
+        }
+
+        fun flushJournal() {
+            awaitIndex()
+            synchronized(journal) { journal.flush() }
+        }
+
+        private fun appendJournal(line: String, flush: Boolean = true) {
+            synchronized(journal) {
+                journal.append(line, flush)
+                if (journal.isRebuildRequired(cacheCount.get())) rebuildJournal()
+            }
+        }
+
+        private fun rebuildJournal() {
+            synchronized(journal) {
+                val entries = LinkedHashMap<String, LongArray>()
+                val millis = System.currentTimeMillis()
+                synchronized(lruFileSizes) {
+                    for ((file, size) in lruFileSizes) {
+                        entries[getRelativeName(file)] = longArrayOf(size, millis)
                     }
                 }
+                journal.rebuild(entries)
             }
-            if (oldestFile == null) return 0
-            val fileSize = oldestFile!!.length()
-            if (oldestFile!!.delete()) {
-                lastUsageDates.remove(oldestFile)
-                return fileSize
+        }
+
+        /**
+         * 使索引与磁盘一致
+         *
+         * 写入文件后、记录日志前进程被杀会留下未计入索引的游离文件，将其作为最久未使用的条目计入，优先淘汰；
+         * 索引中文件已不存在的条目则移除
+         * <br></br>需要遍历所有子目录，只在启动时的索引线程中执行
+         *
+         * @return `true`: 索引有变化<br></br>`false`: 索引与磁盘一致
+         */
+        private fun reconcile(): Boolean {
+            val files = HashSet(listCachedFiles())
+            var sizeDelta = 0L
+            var countDelta = 0
+            var changed = false
+            synchronized(lruFileSizes) {
+                val iterator = lruFileSizes.entries.iterator()
+                while (iterator.hasNext()) {
+                    val entry = iterator.next()
+                    if (!files.remove(entry.key)) {
+                        iterator.remove()
+                        sizeDelta -= entry.value
+                        countDelta -= 1
+                        changed = true
+                    }
+                }
+                if (files.isEmpty()) return@synchronized
+                val lastModifies = HashMap<File, Long>()
+                for (file in files) lastModifies[file] = file.lastModified()
+                val indexed = LinkedHashMap(lruFileSizes)
+                lruFileSizes.clear()
+                for (file in files.sortedBy { lastModifies[it] }) {
+                    val length = file.length()
+                    lruFileSizes[file] = length
+                    sizeDelta += length
+                    countDelta += 1
+                    changed = true
+                }
+                lruFileSizes.putAll(indexed)
+            }
+            cacheSize.addAndGet(sizeDelta)
+            cacheCount.addAndGet(countDelta)
+            return changed
+        }
+    }
+
+    internal class CacheEntry(val data: ByteArray, val dueTime: Long)
+
+    /**
+     * 异步写入器
+     *
+     * 同一批次内同一键只写最新值，定期刷盘时对写过的文件统一刷盘
+     *
+     * 队列中保存的是字节数组的副本，调用方修改原数组不会影响缓存
+     */
+    private inner class CacheWriter(private val syncMode: Int, queueSize: Int) {
+        private val queue = ArrayBlockingQueue<PendingWrite>(Math.max(queueSize, 1))
+        private val pending = ConcurrentHashMap<String, PendingWrite>()
+        private val dirtyFiles = LinkedHashSet<File>()
+        private var lastSyncTime = System.currentTimeMillis()
+        @Volatile
+        private var stopped = false
+
+        init {
+            val thread = Thread(Runnable { loop() }, "CacheUtils-writer")
+            thread.isDaemon = true
+            thread.start()
+        }
+
+        fun enqueue(key: String, data: ByteArray, dueTime: Long, type: Int) {
+            // 其他类型的数组由编码生成，调用方拿不到，无需复制
+            val copy = if (type == CacheHelper.TYPE_BYTES) data.clone() else data
+            val write = PendingWrite(key, copy, dueTime, type, null)
+            pending[key] = write
+            try {
+                queue.put(write)
+            } catch (e: InterruptedException) {
+                e.printStackTrace()
+                pending.remove(key, write)
+                return
+            }
+            // 写入线程已停止，由调用线程自行落盘
+            if (stopped) drainRemaining()
+        }
+
+        fun getPending(key: String): CacheEntry? {
+            val write = pending[key] ?: return null
+            return CacheEntry(write.data.clone(), write.dueTime)
+        }
+
+        fun cancel(key: String) {
+            pending.remove(key)
+        }
+
+        fun cancelAll() {
+            pending.clear()
+        }
+
+        fun flush() {
+            await(PendingWrite(null, EMPTY_BYTES, -1, 0, CountDownLatch(1)))
+        }
+
+        fun shutdown() {
+            await(PendingWrite(null, EMPTY_BYTES, -1, STOP, CountDownLatch(1)))
+        }
+
+        /**
+         * 写入线程停止后仍可能有数据入队，在调用线程写入
+         */
+        @Synchronized
+        fun drainRemaining() {
+            val rest = ArrayList<PendingWrite>()
+            queue.drainTo(rest)
+            for (write in rest) {
+                if (write.latch == null) write(write) else write.latch.countDown()
+            }
+            sync()
+        }
+
+        private fun await(barrier: PendingWrite) {
+            try {
+                queue.put(barrier)
+                barrier.latch!!.await()
+            } catch (e: InterruptedException) {
+                e.printStackTrace()
+            }
+        }
+
+        private fun loop() {
+            val batch = ArrayList<PendingWrite>()
+            while (true) {
+                try {
+                    val first = queue.poll(SYNC_INTERVAL, TimeUnit.MILLISECONDS)
+                    if (first != null) {
+                        batch.add(first)
+                        queue.drainTo(batch)
+                    }
+                } catch (e: InterruptedException) {
+                    e.printStackTrace()
+                }
+                var stop: PendingWrite? = null
+                for (write in batch) {
+                    val latch = write.latch
+                    if (latch == null) {
+                        write(write)
+                    } else if (write.type == STOP) {
+                        // 同一批次中排在停止标记之后的数据也要写完
+                        stop = write
+                    } else {
+                        sync()
+                        latch.countDown()
+                    }
+                }
+                batch.clear()
+                if (stop != null) {
+                    sync()
+                    stopped = true
+                    stop.latch!!.countDown()
+                    return
+                }
+                if (System.currentTimeMillis() - lastSyncTime >= SYNC_INTERVAL) sync()
+            }
+        }
+
+        private fun write(write: PendingWrite) {
+            val key = write.key!!
+            try {
+                synchronized(mWriteLock) {
+                    // 已被更新的值覆盖或已被移除
+                    if (pending[key] !== write) return
+                    try {
+                        writeToDisk(key, write.data, write.dueTime, write.type, syncMode == SYNC_EVERY_WRITE)
+                    } finally {
+                        pending.remove(key, write)
+                    }
+                }
+                if (syncMode == SYNC_PERIODIC) dirtyFiles.add(mCacheManager.getFile(key))
+            } catch (e: RuntimeException) {
+                // 单条写入失败不能让写入线程退出，否则 flush 会一直阻塞
+                e.printStackTrace()
+            }
+        }
+
+        private fun sync() {
+            lastSyncTime = System.currentTimeMillis()
+            if (dirtyFiles.isEmpty()) return
+            for (file in dirtyFiles) {
+                if (!file.exists()) continue
+                var fc: FileChannel? = null
+                try {
+                    fc = FileInputStream(file).channel
+                    fc!!.force(true)
+                } catch (e: IOException) {
+                    e.printStackTrace()
+                } finally {
+                    CloseUtils.closeIO(fc)
+                }
+            }
+            dirtyFiles.clear()
+        }
+    }
+
+    /**
+     * 缓存输出流
+     *
+     * 写入临时文件，关闭时刷盘并重命名为缓存文件，再计入索引
+     */
+    private inner class CacheOutputStream(private val key: String,
+                                          private val tmpFile: File,
+                                          private val fos: FileOutputStream) : OutputStream() {
+        private val out = BufferedOutputStream(fos)
+        private var hasErrors = false
+        private var closed = false
+
+        override fun write(b: Int) {
+            try {
+                out.write(b)
+            } catch (e: IOException) {
+                hasErrors = true
+                throw e
+            }
+        }
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            try {
+                out.write(b, off, len)
+            } catch (e: IOException) {
+                hasErrors = true
+                throw e
+            }
+        }
+
+        override fun flush() {
+            try {
+                out.flush()
+            } catch (e: IOException) {
+                hasErrors = true
+                throw e
+            }
+        }
+
+        override fun close() {
+            if (closed) return
+            closed = true
+            try {
+                out.flush()
+                fos.channel.force(true)
+            } catch (e: IOException) {
+                hasErrors = true
+                throw e
+            } finally {
+                CloseUtils.closeIO(out)
+                if (hasErrors) tmpFile.delete() else commit()
+            }
+        }
+
+        /**
+         * 放弃写入，删除临时文件，不计入索引
+         */
+        fun abort() {
+            if (closed) return
+            closed = true
+            CloseUtils.closeIOQuietly(out)
+            tmpFile.delete()
+        }
+
+        private fun commit() {
+            synchronized(mWriteLock) {
+                mWriter?.cancel(key)
+                val file = mCacheManager.getFileBeforePut(key)
+                if (!tmpFile.renameTo(file)) {
+                    tmpFile.delete()
+                    file.delete()
+                    throw IOException("rename $tmpFile to $file failed")
+                }
+                mCacheManager.put(file)
+            }
+            mMemoryCache?.remove(key)
+        }
+    }
+
+    private class PendingWrite(val key: String?,
+                               val data: ByteArray,
+                               val dueTime: Long,
+                               val type: Int,
+                               val latch: CountDownLatch?)
+
+    /**
+     * 内存缓存
+     *
+     * 以对象占用的字节数计算容量，超出时淘汰最久未使用的对象
+     */
+    private class MemoryCache(maxSize: Int) {
+        val hitCount = AtomicLong()
+        val missCount = AtomicLong()
+        private val generations = IntArray(GENERATION_STRIPES)
+        private val lruCache = object : LruCache<String, MemoryEntry>(maxSize) {
+            override fun sizeOf(key: String, value: MemoryEntry): Int {
+                return value.size
+            }
+        }
+
+        fun <T> get(key: String, clazz: Class<T>): T? {
+            val entry = lruCache.get(key)
+            if (entry != null) {
+                val value = entry.value
+                if (entry.dueTime != -1L && System.currentTimeMillis() > entry.dueTime) {
+                    lruCache.remove(key)
+                } else if (clazz.isInstance(value) && !(value is Bitmap && value.isRecycled)) {
+                    hitCount.incrementAndGet()
+                    return clazz.cast(value)
+                }
+            }
+            missCount.incrementAndGet()
+            return null
+        }
+
+        /**
+         * 获取键所在分段的版本号，每次移除都会使其递增
+         */
+        fun generation(key: String): Int {
+            synchronized(generations) {
+                return generations[stripe(key)]
+            }
+        }
+
+        /**
+         * 版本号与读取前一致时才放入，否则说明读取期间该键已被写入或移除
+         */
+        fun put(key: String, value: Any, dueTime: Long, size: Int, generation: Int) {
+            synchronized(generations) {
+                if (generations[stripe(key)] != generation) return
+                lruCache.put(key, MemoryEntry(value, dueTime, Math.max(size, 1)))
+            }
+        }
+
+        fun remove(key: String) {
+            synchronized(generations) {
+                generations[stripe(key)]++
+                lruCache.remove(key)
+            }
+        }
+
+        fun evictAll() {
+            synchronized(generations) {
+                for (i in generations.indices) generations[i]++
+                lruCache.evictAll()
+            }
+        }
+
+        private fun stripe(key: String): Int {
+            return key.hashCode() and (GENERATION_STRIPES - 1)
+        }
+
+        private class MemoryEntry(val value: Any, val dueTime: Long, val size: Int)
+    }
+
+    /**
+     * 缓存索引日志
+     *
+     * 以追加方式记录写入、读取、移除事件，启动时顺序读取一次即可恢复索引，
+     * 冗余记录过多时重写压缩
+     */
+    private class CacheJournal(cacheDir: File) {
+        private val journalFile = File(cacheDir, JOURNAL_FILE)
+        private val journalFileTmp = File(cacheDir, JOURNAL_FILE_TMP)
+        private var writer: Writer? = null
+        private var redundantOpCount = 0
+
+        /**
+         * 读取日志
+         *
+         * @return 按访问顺序排列的文件名到 [大小, 最近使用时间] 的映射，日志不存在或已损坏返回`null`
+         */
+        fun read(): LinkedHashMap<String, LongArray>? {
+            if (!journalFile.exists()) return null
+            var reader: BufferedReader? = null
+            try {
+                reader = BufferedReader(InputStreamReader(FileInputStream(journalFile), "US-ASCII"))
+                if (MAGIC != reader.readLine() || VERSION != reader.readLine()) return null
+                val entries = LinkedHashMap<String, LongArray>()
+                var lineCount = 0
+                while (true) {
+                    val line = reader.readLine() ?: break
+                    val parts = line.split(' ')
+                    when {
+                        parts.size == 4 && parts[0] == PUT -> {
+                            entries.remove(parts[1])
+                            entries[parts[1]] = longArrayOf(parts[2].toLong(), parts[3].toLong())
+                        }
+                        parts.size == 3 && parts[0] == READ -> {
+                            // 移至表尾以保持访问顺序
+                            val entry = entries.remove(parts[1])
+                            if (entry != null) {
+                                entry[1] = parts[2].toLong()
+                                entries[parts[1]] = entry
+                            }
+                        }
+                        parts.size == 2 && parts[0] == REMOVE -> entries.remove(parts[1])
+                        // 进程被杀可能导致最后一行不完整
+                        else -> return null
+                    }
+                    ++lineCount
+                }
+                redundantOpCount = lineCount - entries.size
+                return entries
+            } catch (e: IOException) {
+                e.printStackTrace()
+                return null
+            } catch (e: NumberFormatException) {
+                e.printStackTrace()
+                return null
+            } finally {
+                CloseUtils.closeIO(reader)
+            }
+        }
+
+        fun open() {
+            try {
+                writer = BufferedWriter(OutputStreamWriter(FileOutputStream(journalFile, true), "US-ASCII"))
+            } catch (e: IOException) {
+                e.printStackTrace()
+                journalFile.delete()
+            }
+        }
+
+        fun append(line: String, flush: Boolean) {
+            val w = writer ?: return
+            try {
+                w.write(line)
+                w.write("\n")
+                if (flush) w.flush()
+                ++redundantOpCount
+            } catch (e: IOException) {
+                e.printStackTrace()
+                // 日志已不完整，删除后下次启动回退到全量扫描
+                CloseUtils.closeIOQuietly(w)
+                writer = null
+                journalFile.delete()
+            }
+        }
+
+        fun flush() {
+            val w = writer ?: return
+            try {
+                w.flush()
+            } catch (e: IOException) {
+                e.printStackTrace()
+                CloseUtils.closeIOQuietly(w)
+                writer = null
+                journalFile.delete()
+            }
+        }
+
+        fun isRebuildRequired(liveCount: Int): Boolean {
+            return redundantOpCount >= REDUNDANT_OP_COMPACT_THRESHOLD && redundantOpCount >= liveCount
+        }
+
+        fun rebuild(entries: Map<String, LongArray>) {
+            CloseUtils.closeIO(writer)
+            writer = null
+            var w: Writer? = null
+            try {
+                w = BufferedWriter(OutputStreamWriter(FileOutputStream(journalFileTmp, false), "US-ASCII"))
+                w.write(MAGIC)
+                w.write("\n")
+                w.write(VERSION)
+                w.write("\n")
+                for ((name, entry) in entries) {
+                    w.write(PUT + " " + name + " " + entry[0] + " " + entry[1] + "\n")
+                }
+                w.close()
+                w = null
+                if (!journalFileTmp.renameTo(journalFile)) {
+                    journalFile.delete()
+                    if (!journalFileTmp.renameTo(journalFile)) return
+                }
+                redundantOpCount = 0
+                open()
+            } catch (e: IOException) {
+                e.printStackTrace()
+                CloseUtils.closeIOQuietly(w)
+                journalFileTmp.delete()
+                journalFile.delete()
+            }
+        }
+
+        companion object {
+            const val JOURNAL_FILE = "journal"
+            const val JOURNAL_FILE_TMP = "journal.tmp"
+            const val MAGIC = "CacheUtils.journal"
+            const val VERSION = "1"
+            const val PUT = "PUT"
+            const val READ = "READ"
+            const val REMOVE = "REMOVE"
+            const val REDUNDANT_OP_COMPACT_THRESHOLD = 2000
+
+            fun isJournalFile(file: File): Boolean {
+                val name = file.name
+                return name == JOURNAL_FILE || name == JOURNAL_FILE_TMP
             }
-            return 0
         }
     }
 
     sealed class CacheHelper {
         companion object {
+            // 旧格式：数据前加 "_$秒级时间戳$_" 的 14 字节字符串，无过期时间时不加
             internal const val timeInfoLen = 14
 
-            fun newByteArrayWithTime(second: Int, data: ByteArray): ByteArray {
-                val time = createDueTime(second).toByteArray()
-                val content = ByteArray(time.size + data.size)
-                System.arraycopy(time, 0, content, 0, time.size)
-                System.arraycopy(data, 0, content, time.size, data.size)
-                return content
+            // 新格式：16 字节二进制头
+            // [0, 4) 魔数 | 4 版本 | 5 标记 | 6 数据类型 | 7 保留 | [8, 16) 过期时间毫秒
+            internal const val HEADER_LEN = 16
+            private const val HEADER_MAGIC = 0xCAC4E555.toInt()
+            private const val HEADER_VERSION: Byte = 1
+            private const val FLAG_DUE_TIME = 0x01
+
+            internal const val TYPE_BYTES = 0
+            internal const val TYPE_STRING = 1
+            internal const val TYPE_JSON_OBJECT = 2
+            internal const val TYPE_JSON_ARRAY = 3
+            internal const val TYPE_BITMAP = 4
+            internal const val TYPE_DRAWABLE = 5
+            internal const val TYPE_PARCELABLE = 6
+            internal const val TYPE_SERIALIZABLE = 7
+
+            internal const val TMP_SUFFIX = ".tmp"
+
+            private val HEX_DIGITS = charArrayOf('0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f')
+            private val MD5 = object : ThreadLocal<MessageDigest>() {
+                override fun initialValue(): MessageDigest {
+                    return MessageDigest.getInstance("MD5")
+                }
             }
 
             /**
-             * 创建过期时间
+             * 键转文件名
              *
-             * @param second 秒
-             * @return _$millis$_
+             * 使用 128 位的 MD5 代替 32 位的 hashCode，避免不同键映射到同一文件
+             *
+             * @param key 键
+             * @return 32 位小写十六进制字符串
              */
-            fun createDueTime(second: Int): String {
-                return String.format(
-                        Locale.getDefault(), "_$%010d$" + "_",
-                        System.currentTimeMillis() / 1000 + second
-                )
+            fun key2FileName(key: String): String {
+                val digest = MD5.get().digest(key.toByteArray(Charsets.UTF_8))
+                val chars = CharArray(digest.size shl 1)
+                var i = 0
+                for (b in digest) {
+                    chars[i++] = HEX_DIGITS[b.toInt() shr 4 and 0x0f]
+                    chars[i++] = HEX_DIGITS[b.toInt() and 0x0f]
+                }
+                return String(chars)
+            }
+
+            fun isDue(dueTime: Long): Boolean {
+                return dueTime != -1L && System.currentTimeMillis() > dueTime
             }
 
             fun isDue(data: ByteArray): Boolean {
-                val millis = getDueTime(data)
-                return millis != -1L && System.currentTimeMillis() > millis
+                return isDue(getDueTime(data))
             }
 
             fun getDueTime(data: ByteArray): Long {
@@ -521,12 +1471,38 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
                         && data[13] == '_'.toByte())
             }
 
-            fun writeFileFromBytes(file: File, bytes: ByteArray) {
+            fun createHeader(dueTime: Long, type: Int): ByteBuffer {
+                val header = ByteBuffer.allocate(HEADER_LEN)
+                header.putInt(HEADER_MAGIC)
+                        .put(HEADER_VERSION)
+                        .put((if (dueTime != -1L) FLAG_DUE_TIME else 0).toByte())
+                        .put(type.toByte())
+                        .put(0.toByte())
+                        .putLong(dueTime)
+                header.flip()
+                return header
+            }
+
+            fun isHeader(header: ByteBuffer): Boolean {
+                return header.limit() >= HEADER_LEN
+                        && header.getInt(0) == HEADER_MAGIC
+                        && header.get(4) == HEADER_VERSION
+            }
+
+            fun getHeaderDueTime(header: ByteBuffer): Long {
+                return if (header.get(5).toInt() and FLAG_DUE_TIME != 0) header.getLong(8) else -1L
+            }
+
+            fun writeFileFromBytes(file: File, bytes: ByteArray, dueTime: Long, type: Int, isForce: Boolean) {
                 var fc: FileChannel? = null
                 try {
                     fc = FileOutputStream(file, false).channel
-                    fc!!.write(ByteBuffer.wrap(bytes))
-                    fc.force(true)
+                    // 头部和数据一次聚集写入，无需拼接数组
+                    val buffers = arrayOf(createHeader(dueTime, type), ByteBuffer.wrap(bytes))
+                    while (buffers[1].hasRemaining()) {
+                        fc!!.write(buffers)
+                    }
+                    if (isForce) fc!!.force(true)
                 } catch (e: IOException) {
                     e.printStackTrace()
                 } finally {
@@ -534,15 +1510,36 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
                 }
             }
 
-            fun readFile2Bytes(file: File): ByteArray? {
+            /**
+             * 读取缓存条目
+             *
+             * 新格式的头部和数据一次分散读取，数据直接读入结果数组；旧格式按原方式解析
+             *
+             * @param file 文件
+             * @return 缓存条目，读取失败返回`null`
+             */
+            internal fun readEntry(file: File): CacheEntry? {
                 var fc: FileChannel? = null
                 try {
                     fc = RandomAccessFile(file, "r").channel
                     val size = fc!!.size().toInt()
-                    val mbb = fc.map(FileChannel.MapMode.READ_ONLY, 0, size.toLong()).load()
-                    val data = ByteArray(size)
-                    mbb.get(data, 0, size)
-                    return data
+                    if (size < HEADER_LEN) {
+                        // 旧格式带时间前缀时数据可能只有 1、2 个字节
+                        val legacy = ByteArray(size)
+                        readFully(fc, arrayOf(ByteBuffer.wrap(legacy)))
+                        return CacheEntry(getDataWithoutDueTime(legacy), getDueTime(legacy))
+                    }
+                    val header = ByteBuffer.allocate(HEADER_LEN)
+                    val data = ByteArray(size - HEADER_LEN)
+                    readFully(fc, arrayOf(header, ByteBuffer.wrap(data)))
+                    header.flip()
+                    if (isHeader(header)) {
+                        return CacheEntry(data, getHeaderDueTime(header))
+                    }
+                    val legacy = ByteArray(size)
+                    System.arraycopy(header.array(), 0, legacy, 0, HEADER_LEN)
+                    System.arraycopy(data, 0, legacy, HEADER_LEN, data.size)
+                    return CacheEntry(getDataWithoutDueTime(legacy), getDueTime(legacy))
                 } catch (e: IOException) {
                     e.printStackTrace()
                     return null
@@ -551,6 +1548,16 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
                 }
             }
 
+            private fun readFully(fc: FileChannel, buffers: Array<ByteBuffer>) {
+                var remaining = 0L
+                for (buffer in buffers) remaining += buffer.remaining()
+                while (remaining > 0) {
+                    val len = fc.read(buffers)
+                    if (len < 0) throw EOFException()
+                    remaining -= len
+                }
+            }
+
             fun string2Bytes(string: String?): ByteArray? {
                 return string?.toByteArray()
             }
@@ -707,12 +1714,25 @@ class CacheUtils private constructor(cacheDir: File, maxSize: Long, maxCount: In
 
         private const val DEFAULT_MAX_SIZE = java.lang.Long.MAX_VALUE
         private const val DEFAULT_MAX_COUNT = Integer.MAX_VALUE
+        private const val DEFAULT_QUEUE_SIZE = 256
+        private const val SYNC_INTERVAL = 1000L
+        private const val STOP = -1
+        private const val GENERATION_STRIPES = 64
+        private val EMPTY_BYTES = ByteArray(0)
 
         const val SEC = 1
         const val MIN = 60
         const val HOUR = 3600
         const val DAY = 86400
 
+        const val SYNC_EVERY_WRITE = 0
+        const val SYNC_PERIODIC = 1
+        const val SYNC_NONE = 2
+
+        @IntDef(SYNC_EVERY_WRITE.toLong(), SYNC_PERIODIC.toLong(), SYNC_NONE.toLong())
+        @kotlin.annotation.Retention(AnnotationRetention.SOURCE)
+        annotation class SyncMode
+
         private val CACHE_MAP = SimpleArrayMap<String, CacheUtils>()
 
         /**
@@ -106,43 +106,8 @@ object CleanUtils {
     }
 
     private fun deleteFilesInDir(dir: File?): Boolean {
-        if (dir == null) return false
-        // 目录不存在返回 true
-        if (!dir.exists()) return true
-        // 不是目录返回 false
-        if (!dir.isDirectory) return false
-        // 现在文件存在且是文件夹
-        val files = dir.listFiles()
-        if (files != null && files.isNotEmpty()) {
-            for (file in files) {
-                if (file.isFile) {
-                    if (!file.delete()) return false
-                } else if (file.isDirectory) {
-                    if (!deleteDir(file)) return false
-                }
-            }
-        }
-        return true
-    }
-
-    private fun deleteDir(dir: File?): Boolean {
-        if (dir == null) return false
-        // 目录不存在返回 true
-        if (!dir.exists()) return true
-        // 不是目录返回 false
-        if (!dir.isDirectory) return false
-        // 现在文件存在且是文件夹
-        val files = dir.listFiles()
-        if (files != null && files.isNotEmpty()) {
-            for (file in files) {
-                if (file.isFile) {
-                    if (!file.delete()) return false
-                } else if (file.isDirectory) {
-                    if (!deleteDir(file)) return false
-                }
-            }
-        }
-        return dir.delete()
+        // 由 FileUtils 遍历删除，默认顺序执行，通过 FileUtils.setWalkParallelism 开启并行后并行删除
+        return FileUtils.deleteAllInDir(dir)
     }
 
     private fun getFileByPath(filePath: String): File? {
@@ -1,15 +1,23 @@
 package com.blankj.utilcode.util
 
+import android.os.Build
 import android.util.Base64
-import java.io.File
-import java.io.FileInputStream
-import java.io.IOException
-import java.security.DigestInputStream
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.channels.ReadableByteChannel
+import java.nio.channels.SelectableChannel
+import java.nio.channels.WritableByteChannel
+import java.security.GeneralSecurityException
 import java.security.InvalidKeyException
 import java.security.MessageDigest
 import java.security.NoSuchAlgorithmException
+import java.security.SecureRandom
+import java.util.*
 import javax.crypto.Cipher
 import javax.crypto.Mac
+import javax.crypto.spec.GCMParameterSpec
 import javax.crypto.spec.IvParameterSpec
 import javax.crypto.spec.SecretKeySpec
 
@@ -23,6 +31,37 @@ import javax.crypto.spec.SecretKeySpec
  */
 object EncryptUtils {
 
+    /**
+     * 读取文件时的缓冲区大小
+     */
+    private const val FILE_BUFFER_SIZE = 256 shl 10
+
+    private val DIGESTS = object : ThreadLocal<HashMap<String, MessageDigest>>() {
+        override fun initialValue(): HashMap<String, MessageDigest> {
+            return HashMap()
+        }
+    }
+
+    private val MACS = object : ThreadLocal<HashMap<String, MacHolder>>() {
+        override fun initialValue(): HashMap<String, MacHolder> {
+            return HashMap()
+        }
+    }
+
+    private val KEY_SALT = ByteArray(16).also { SecureRandom().nextBytes(it) }
+
+    private val CIPHERS = object : ThreadLocal<HashMap<String, CipherHolder>>() {
+        override fun initialValue(): HashMap<String, CipherHolder> {
+            return HashMap()
+        }
+    }
+
+    /**
+     * 流式加解密每次处理的字节数
+     */
+    private const val CIPHER_CHUNK = 64 shl 10
+
+    private const val GCM_TAG_BITS = 128
 
     ///////////////////////////////////////////////////////////////////////////
     // 哈希加密相关
@@ -153,23 +192,44 @@ object EncryptUtils {
      * @return 文件的 MD5 校验码
      */
     fun encryptMD5File(file: File?): ByteArray? {
+        return encryptFile(file, "MD5")
+    }
+
+    /**
+     * hash 加密文件
+     *
+     * @param file      文件
+     * @param algorithm 加密算法，如 MD5、SHA1、SHA256
+     * @return 文件的 16 进制密文
+     */
+    fun encryptFile2String(file: File?, algorithm: String): String? {
+        return bytes2HexString(encryptFile(file, algorithm))
+    }
+
+    /**
+     * hash 加密文件
+     *
+     * 分块读取文件，并复用当前线程缓存的 [MessageDigest]
+     *
+     * @param file      文件
+     * @param algorithm 加密算法，如 MD5、SHA1、SHA256
+     * @return 文件的校验码
+     */
+    fun encryptFile(file: File?, algorithm: String): ByteArray? {
         if (file == null) return null
+        val md = getDigest(algorithm) ?: return null
         var fis: FileInputStream? = null
-        val digestInputStream: DigestInputStream
         try {
             fis = FileInputStream(file)
-            var md = MessageDigest.getInstance("MD5")
-            digestInputStream = DigestInputStream(fis, md)
-            val buffer = ByteArray(256 * 1024)
-            while (true) {
-                if (digestInputStream.read(buffer) <= 0) break
-            }
-            md = digestInputStream.messageDigest
+            updateFile(fis.channel, md, null)
             return md.digest()
-        } catch (e: NoSuchAlgorithmException) {
+        } catch (e: IOException) {
+            md.reset()
             e.printStackTrace()
             return null
-        } catch (e: IOException) {
+        } catch (e: RuntimeException) {
+            // 不重置的话，缓存的 MessageDigest 会带着部分数据影响当前线程的下一次计算
+            md.reset()
             e.printStackTrace()
             return null
         } finally {
@@ -336,15 +396,26 @@ object EncryptUtils {
      */
     private fun hashTemplate(data: ByteArray?, algorithm: String): ByteArray? {
         if (data == null || data.isEmpty()) return null
-        try {
-            val md = MessageDigest.getInstance(algorithm)
-            md.update(data)
-            return md.digest()
-        } catch (e: NoSuchAlgorithmException) {
-            e.printStackTrace()
-            return null
-        }
+        val md = getDigest(algorithm) ?: return null
+        return md.digest(data)
+    }
 
+    /**
+     * 获取当前线程缓存的 [MessageDigest]
+     */
+    private fun getDigest(algorithm: String): MessageDigest? {
+        val digests = DIGESTS.get()
+        var md = digests[algorithm]
+        if (md == null) {
+            try {
+                md = MessageDigest.getInstance(algorithm)
+            } catch (e: NoSuchAlgorithmException) {
+                e.printStackTrace()
+                return null
+            }
+            digests.put(algorithm, md!!)
+        }
+        return md
     }
 
     /**
@@ -557,11 +628,112 @@ object EncryptUtils {
                              key: ByteArray?,
                              algorithm: String): ByteArray? {
         if (data == null || data.isEmpty() || key == null || key.isEmpty()) return null
+        val mac = getMac(algorithm, key) ?: return null
+        return mac.doFinal(data)
+    }
+
+    /**
+     * Hmac 加密文件
+     *
+     * @param file      文件
+     * @param key       秘钥
+     * @param algorithm 加密算法，如 HmacMD5、HmacSHA256
+     * @return 密文字节数组
+     */
+    fun encryptHmacFile(file: File?, key: ByteArray?, algorithm: String): ByteArray? {
+        if (file == null || key == null || key.isEmpty()) return null
+        val mac = getMac(algorithm, key) ?: return null
+        var fis: FileInputStream? = null
+        try {
+            fis = FileInputStream(file)
+            updateFile(fis.channel, null, mac)
+            return mac.doFinal()
+        } catch (e: IOException) {
+            mac.reset()
+            e.printStackTrace()
+            return null
+        } catch (e: RuntimeException) {
+            mac.reset()
+            e.printStackTrace()
+            return null
+        } finally {
+            CloseUtils.closeIO(fis)
+        }
+    }
+
+    /**
+     * 获取当前线程缓存的 [Mac]，秘钥与上次相同时不再重新初始化
+     */
+    private fun getMac(algorithm: String, key: ByteArray): Mac? {
+        val macs = MACS.get()
+        var holder = macs[algorithm]
+        try {
+            if (holder == null) {
+                holder = MacHolder(Mac.getInstance(algorithm))
+                macs.put(algorithm, holder)
+            }
+            val fingerprint = keyFingerprint(key)
+            val old = holder.keyFingerprint
+            if (old == null || !MessageDigest.isEqual(old, fingerprint)) {
+                holder.keyFingerprint = null
+                holder.mac.init(SecretKeySpec(key, algorithm))
+                holder.keyFingerprint = fingerprint
+            }
+            return holder.mac
+        } catch (e: InvalidKeyException) {
+            e.printStackTrace()
+            return null
+        } catch (e: NoSuchAlgorithmException) {
+            e.printStackTrace()
+            return null
+        }
+    }
+
+    private class MacHolder(val mac: Mac) {
+        var keyFingerprint: ByteArray? = null
+    }
+
+    /**
+     * 秘钥指纹，缓存中只保存加盐的摘要用于比较是否同一秘钥，不保存秘钥本身
+     */
+    private fun keyFingerprint(key: ByteArray): ByteArray {
+        val md = getDigest("SHA-256")!!
+        md.update(KEY_SALT)
+        return md.digest(key)
+    }
+
+    /**
+     * 获取增量 hash 计算器
+     *
+     * 可多次 update 后 digest，digest 后自动重置，可重复使用；不是线程安全的
+     *
+     * @param algorithm 加密算法，如 MD5、SHA1、SHA256
+     * @return 计算器，不支持该算法时返回 `null`
+     */
+    fun getHasher(algorithm: String): Hasher? {
+        try {
+            return Hasher(MessageDigest.getInstance(algorithm), null)
+        } catch (e: NoSuchAlgorithmException) {
+            e.printStackTrace()
+            return null
+        }
+    }
+
+    /**
+     * 获取增量 Hmac 计算器
+     *
+     * 可多次 update 后 digest，digest 后自动重置，可重复使用；不是线程安全的
+     *
+     * @param algorithm 加密算法，如 HmacMD5、HmacSHA256
+     * @param key       秘钥
+     * @return 计算器，不支持该算法或秘钥无效时返回 `null`
+     */
+    fun getHmacHasher(algorithm: String, key: ByteArray): Hasher? {
+        if (key.isEmpty()) return null
         try {
-            val secretKey = SecretKeySpec(key, algorithm)
             val mac = Mac.getInstance(algorithm)
-            mac.init(secretKey)
-            return mac.doFinal(data)
+            mac.init(SecretKeySpec(key, algorithm))
+            return Hasher(null, mac)
         } catch (e: InvalidKeyException) {
             e.printStackTrace()
             return null
@@ -569,7 +741,118 @@ object EncryptUtils {
             e.printStackTrace()
             return null
         }
+    }
+
+    /**
+     * 增量 hash 计算器，包装 [MessageDigest] 或 [Mac]
+     */
+    class Hasher internal constructor(private val md: MessageDigest?, private val mac: Mac?) {
+        private var buffer: ByteArray? = null
+
+        fun update(data: ByteArray): Hasher {
+            return update(data, 0, data.size)
+        }
+
+        fun update(data: ByteArray, offset: Int, len: Int): Hasher {
+            md?.update(data, offset, len)
+            mac?.update(data, offset, len)
+            return this
+        }
 
+        /**
+         * @param buffer 从 position 读到 limit，读完后 position 等于 limit
+         */
+        fun update(buffer: ByteBuffer): Hasher {
+            md?.update(buffer)
+            mac?.update(buffer)
+            return this
+        }
+
+        /**
+         * 读取输入流直到末尾，不会关闭输入流
+         */
+        @Throws(IOException::class)
+        fun update(input: InputStream): Hasher {
+            val buffer = buffer ?: ByteArray(BUFFER_SIZE).also { buffer = it }
+            while (true) {
+                val len = input.read(buffer)
+                if (len == -1) break
+                update(buffer, 0, len)
+            }
+            return this
+        }
+
+        /**
+         * 分块读取通道中从当前位置到末尾的数据，不会关闭通道
+         */
+        @Throws(IOException::class)
+        fun update(channel: FileChannel): Hasher {
+            updateFile(channel, md, mac)
+            return this
+        }
+
+        /**
+         * 分块读取文件
+         */
+        @Throws(IOException::class)
+        fun update(file: File): Hasher {
+            var fis: FileInputStream? = null
+            try {
+                fis = FileInputStream(file)
+                updateFile(fis.channel, md, mac)
+            } finally {
+                CloseUtils.closeIO(fis)
+            }
+            return this
+        }
+
+        /**
+         * 完成计算并重置
+         *
+         * @return 密文字节数组
+         */
+        fun digest(): ByteArray {
+            return md?.digest() ?: mac!!.doFinal()
+        }
+
+        /**
+         * 完成计算并重置
+         *
+         * @return 16 进制密文
+         */
+        fun digestToString(): String {
+            return bytes2HexString(digest()) ?: ""
+        }
+
+        /**
+         * 丢弃已 update 的数据
+         */
+        fun reset() {
+            md?.reset()
+            mac?.reset()
+        }
+
+        companion object {
+            private const val BUFFER_SIZE = 64 shl 10
+        }
+    }
+
+    /**
+     * 分块读取通道中从当前位置到末尾的数据
+     *
+     * 不使用内存映射，避免大文件在 32 位进程中耗尽地址空间
+     */
+    @Throws(IOException::class)
+    private fun updateFile(channel: FileChannel, md: MessageDigest?, mac: Mac?) {
+        val bytes = ByteArray(FILE_BUFFER_SIZE)
+        val buffer = ByteBuffer.wrap(bytes)
+        while (true) {
+            buffer.clear()
+            val len = channel.read(buffer)
+            if (len == -1) break
+            md?.update(bytes, 0, len)
+            mac?.update(bytes, 0, len)
+        }
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -925,22 +1208,299 @@ object EncryptUtils {
                             isEncrypt: Boolean): ByteArray? {
         if (data == null || data.isEmpty() || key == null || key.isEmpty()) return null
         try {
-            val keySpec = SecretKeySpec(key, algorithm)
-            val cipher = Cipher.getInstance(transformation)
-            if (iv == null || iv.isEmpty()) {
-                cipher.init(if (isEncrypt) Cipher.ENCRYPT_MODE else Cipher.DECRYPT_MODE, keySpec)
-            } else {
-                val params = IvParameterSpec(iv)
-                cipher.init(if (isEncrypt) Cipher.ENCRYPT_MODE else Cipher.DECRYPT_MODE, keySpec, params)
-            }
-            return cipher.doFinal(data)
+            return getCipher(algorithm, key, transformation, iv, isEncrypt).doFinal(data)
         } catch (e: Throwable) {
+            CIPHERS.get().remove(transformation)
             e.printStackTrace()
             return null
         }
 
     }
 
+    /**
+     * 获取 [Cipher]
+     *
+     * 普通模式的 Cipher 缓存在当前线程；ECB 等不使用初始化向量的模式在秘钥、模式与上次相同时直接复用，doFinal 后 Cipher 会回到初始化后的状态
+     * <br></br>CBC、CTR 等模式不传初始化向量时每次重新初始化，加密时由 Cipher 生成新的随机初始化向量，相同明文不会得到相同密文
+     * <br></br>GCM 等认证加密模式的 Cipher 会拒绝以相同的秘钥和初始化向量再次加密，每次新建，行为与不缓存时一致
+     */
+    @Throws(GeneralSecurityException::class)
+    private fun getCipher(algorithm: String,
+                          key: ByteArray,
+                          transformation: String,
+                          iv: ByteArray?,
+                          isEncrypt: Boolean): Cipher {
+        val mode = if (isEncrypt) Cipher.ENCRYPT_MODE else Cipher.DECRYPT_MODE
+        val hasIv = iv != null && iv.isNotEmpty()
+        if (isAead(transformation)) {
+            val cipher = Cipher.getInstance(transformation)
+            initCipher(cipher, mode, SecretKeySpec(key, algorithm), transformation, if (hasIv) iv else null)
+            return cipher
+        }
+        val ciphers = CIPHERS.get()
+        var holder = ciphers[transformation]
+        if (holder == null) {
+            holder = CipherHolder(Cipher.getInstance(transformation))
+            ciphers.put(transformation, holder)
+        }
+        val fingerprint = if (hasIv || !isIvLess(transformation)) null else keyFingerprint(key)
+        val old = holder.keyFingerprint
+        if (fingerprint != null && old != null && holder.mode == mode && algorithm == holder.algorithm
+                && MessageDigest.isEqual(old, fingerprint)) {
+            return holder.cipher
+        }
+        holder.keyFingerprint = null
+        initCipher(holder.cipher, mode, SecretKeySpec(key, algorithm), transformation, if (hasIv) iv else null)
+        if (fingerprint != null) {
+            holder.keyFingerprint = fingerprint
+            holder.algorithm = algorithm
+            holder.mode = mode
+        }
+        return holder.cipher
+    }
+
+    @Throws(GeneralSecurityException::class)
+    private fun initCipher(cipher: Cipher, mode: Int, keySpec: SecretKeySpec, transformation: String, iv: ByteArray?) {
+        if (iv == null) {
+            cipher.init(mode, keySpec)
+        } else if (transformation.contains("/GCM/", true) && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            cipher.init(mode, keySpec, GCMParameterSpec(GCM_TAG_BITS, iv))
+        } else {
+            cipher.init(mode, keySpec, IvParameterSpec(iv))
+        }
+    }
+
+    /**
+     * 是否为不使用初始化向量的模式，如 AES/ECB/PKCS5Padding，或省略模式的 AES
+     */
+    private fun isIvLess(transformation: String): Boolean {
+        val parts = transformation.split('/')
+        return parts.size < 2 || parts[1].equals("ECB", true)
+    }
+
+    private fun isAead(transformation: String): Boolean {
+        return transformation.contains("/GCM/", true)
+                || transformation.contains("/CCM/", true)
+                || transformation.startsWith("ChaCha20", true)
+    }
+
+    private class CipherHolder(val cipher: Cipher) {
+        var keyFingerprint: ByteArray? = null
+        var algorithm: String? = null
+        var mode = 0
+    }
+
+    /**
+     * 流式加密
+     *
+     * 分段加密，不会将数据全部读入内存；不会关闭输入输出流
+     * <br></br>支持 AES/GCM/NoPadding 等认证加密模式，GCM 的初始化向量不可重复使用
+     *
+     * @param input          明文输入流
+     * @param output         密文输出流
+     * @param key            秘钥
+     * @param transformation 转变，如 AES/CBC/PKCS5Padding、AES/GCM/NoPadding
+     * @param iv             初始化向量
+     * @return `true`: 加密成功<br></br>`false`: 加密失败
+     */
+    @JvmOverloads
+    fun encryptStream(input: InputStream?,
+                      output: OutputStream?,
+                      key: ByteArray?,
+                      transformation: String,
+                      iv: ByteArray? = null): Boolean {
+        if (input == null || output == null) return false
+        return cipherChannel(Channels.newChannel(input), Channels.newChannel(output), key, transformation, iv, true)
+    }
+
+    /**
+     * 流式解密
+     *
+     * 分段解密，不会将数据全部读入内存；不会关闭输入输出流
+     * <br></br>GCM 模式下部分实现会缓存全部密文直到校验完成；校验失败时返回 `false`，已写出的数据应丢弃
+     *
+     * @param input          密文输入流
+     * @param output         明文输出流
+     * @param key            秘钥
+     * @param transformation 转变，如 AES/CBC/PKCS5Padding、AES/GCM/NoPadding
+     * @param iv             初始化向量
+     * @return `true`: 解密成功<br></br>`false`: 解密失败
+     */
+    @JvmOverloads
+    fun decryptStream(input: InputStream?,
+                      output: OutputStream?,
+                      key: ByteArray?,
+                      transformation: String,
+                      iv: ByteArray? = null): Boolean {
+        if (input == null || output == null) return false
+        return cipherChannel(Channels.newChannel(input), Channels.newChannel(output), key, transformation, iv, false)
+    }
+
+    /**
+     * 通道加密，不会关闭通道
+     *
+     * 通道须为阻塞模式，非阻塞的 [SelectableChannel] 直接返回 `false`
+     *
+     * @param src            明文通道
+     * @param dest           密文通道
+     * @param key            秘钥
+     * @param transformation 转变，如 AES/CBC/PKCS5Padding、AES/GCM/NoPadding
+     * @param iv             初始化向量
+     * @return `true`: 加密成功<br></br>`false`: 加密失败
+     */
+    @JvmOverloads
+    fun encryptChannel(src: ReadableByteChannel?,
+                       dest: WritableByteChannel?,
+                       key: ByteArray?,
+                       transformation: String,
+                       iv: ByteArray? = null): Boolean {
+        return cipherChannel(src, dest, key, transformation, iv, true)
+    }
+
+    /**
+     * 通道解密，不会关闭通道
+     *
+     * 通道须为阻塞模式，非阻塞的 [SelectableChannel] 直接返回 `false`
+     *
+     * @param src            密文通道
+     * @param dest           明文通道
+     * @param key            秘钥
+     * @param transformation 转变，如 AES/CBC/PKCS5Padding、AES/GCM/NoPadding
+     * @param iv             初始化向量
+     * @return `true`: 解密成功<br></br>`false`: 解密失败
+     */
+    @JvmOverloads
+    fun decryptChannel(src: ReadableByteChannel?,
+                       dest: WritableByteChannel?,
+                       key: ByteArray?,
+                       transformation: String,
+                       iv: ByteArray? = null): Boolean {
+        return cipherChannel(src, dest, key, transformation, iv, false)
+    }
+
+    /**
+     * 加密文件
+     *
+     * @param srcFile        明文文件
+     * @param destFile       密文文件
+     * @param key            秘钥
+     * @param transformation 转变，如 AES/CBC/PKCS5Padding、AES/GCM/NoPadding
+     * @param iv             初始化向量
+     * @return `true`: 加密成功<br></br>`false`: 加密失败，会删除密文文件
+     */
+    @JvmOverloads
+    fun encryptFile2File(srcFile: File?,
+                         destFile: File?,
+                         key: ByteArray?,
+                         transformation: String,
+                         iv: ByteArray? = null): Boolean {
+        return cipherFile(srcFile, destFile, key, transformation, iv, true)
+    }
+
+    /**
+     * 解密文件
+     *
+     * @param srcFile        密文文件
+     * @param destFile       明文文件
+     * @param key            秘钥
+     * @param transformation 转变，如 AES/CBC/PKCS5Padding、AES/GCM/NoPadding
+     * @param iv             初始化向量
+     * @return `true`: 解密成功<br></br>`false`: 解密失败，会删除明文文件
+     */
+    @JvmOverloads
+    fun decryptFile2File(srcFile: File?,
+                         destFile: File?,
+                         key: ByteArray?,
+                         transformation: String,
+                         iv: ByteArray? = null): Boolean {
+        return cipherFile(srcFile, destFile, key, transformation, iv, false)
+    }
+
+    private fun cipherFile(srcFile: File?,
+                           destFile: File?,
+                           key: ByteArray?,
+                           transformation: String,
+                           iv: ByteArray?,
+                           isEncrypt: Boolean): Boolean {
+        if (srcFile == null || destFile == null) return false
+        var fis: FileInputStream? = null
+        var fos: FileOutputStream? = null
+        var success = false
+        try {
+            fis = FileInputStream(srcFile)
+            fos = FileOutputStream(destFile)
+            success = cipherChannel(fis.channel, fos.channel, key, transformation, iv, isEncrypt)
+        } catch (e: IOException) {
+            e.printStackTrace()
+        } finally {
+            CloseUtils.closeIO(fis, fos)
+            if (!success) destFile.delete()
+        }
+        return success
+    }
+
+    /**
+     * 分段 update，最后 doFinal
+     * <br></br>输出放得下时复用缓冲区；GCM 解密等需要缓存数据的模式放不下时由 Cipher 分配
+     */
+    private fun cipherChannel(src: ReadableByteChannel?,
+                              dest: WritableByteChannel?,
+                              key: ByteArray?,
+                              transformation: String,
+                              iv: ByteArray?,
+                              isEncrypt: Boolean): Boolean {
+        if (src == null || dest == null || key == null || key.isEmpty()) return false
+        // 非阻塞通道可能读写 0 字节，循环会空转
+        if (src is SelectableChannel && !src.isBlocking || dest is SelectableChannel && !dest.isBlocking) return false
+        val algorithm = transformation.substringBefore('/')
+        try {
+            val cipher = getCipher(algorithm, key, transformation, iv, isEncrypt)
+            try {
+                val input = ByteArray(CIPHER_CHUNK)
+                val inputBuffer = ByteBuffer.wrap(input)
+                val output = ByteArray(cipher.getOutputSize(CIPHER_CHUNK))
+                while (true) {
+                    inputBuffer.clear()
+                    val len = src.read(inputBuffer)
+                    if (len == -1) break
+                    if (len == 0) continue
+                    if (cipher.getOutputSize(len) <= output.size) {
+                        writeFully(dest, output, cipher.update(input, 0, len, output, 0))
+                    } else {
+                        val res = cipher.update(input, 0, len)
+                        if (res != null) writeFully(dest, res, res.size)
+                    }
+                }
+                if (cipher.getOutputSize(0) <= output.size) {
+                    writeFully(dest, output, cipher.doFinal(output, 0))
+                } else {
+                    val res = cipher.doFinal()
+                    writeFully(dest, res, res.size)
+                }
+                return true
+            } catch (e: Exception) {
+                // 出错时 Cipher 的状态未知，移出缓存
+                CIPHERS.get().remove(transformation)
+                throw e
+            }
+        } catch (e: GeneralSecurityException) {
+            e.printStackTrace()
+            return false
+        } catch (e: IOException) {
+            e.printStackTrace()
+            return false
+        } catch (e: RuntimeException) {
+            e.printStackTrace()
+            return false
+        }
+    }
+
+    @Throws(IOException::class)
+    private fun writeFully(dest: WritableByteChannel, bytes: ByteArray, len: Int) {
+        val buffer = ByteBuffer.wrap(bytes, 0, len)
+        while (buffer.hasRemaining()) dest.write(buffer)
+    }
+
     private val hexDigits = charArrayOf('0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F')
 
     private fun bytes2HexString(bytes: ByteArray?): String? {
@@ -1,7 +1,9 @@
 package com.blankj.utilcode.util
 
+import android.os.Build
 import java.io.*
 import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
 import java.nio.channels.FileChannel
 import java.util.*
 
@@ -404,30 +406,236 @@ object FileIOUtils {
                       charsetName: String? = null): List<String>? {
         if (!isFileExists(file)) return null
         if (st > end) return null
-        var reader: BufferedReader? = null
+        // 存在行索引时直接定位到开始行
+        val iterator = readFile2Iterator(file, st, charsetName) ?: return null
         try {
-            var line: String? = null
-            var curLine = 1
             val list = ArrayList<String>()
-            if (isSpace(charsetName)) {
-                reader = BufferedReader(InputStreamReader(FileInputStream(file!!)))
-            } else {
-                reader = BufferedReader(
-                        InputStreamReader(FileInputStream(file!!), charsetName!!)
-                )
-            }
-            while ({ line = reader.readLine();line }() != null) {
-                if (curLine > end) break
-                if (curLine in st..end) list.add(line!!)
+            var curLine = Math.max(st, 1)
+            while (curLine <= end && iterator.hasNext()) {
+                list.add(iterator.next())
                 ++curLine
             }
             return list
+        } finally {
+            CloseUtils.closeIO(iterator)
+        }
+    }
+
+    /**
+     * 逐行读取文件
+     *
+     * 按需读取，不会将整个文件读入内存，用完需调用 [LineIterator.close]，读到末尾时会自动关闭
+     * <br></br>Kotlin 中可通过 asSequence() 转为 Sequence
+     *
+     * @param filePath 文件路径
+     * @return 行迭代器
+     */
+    fun readFile2Iterator(filePath: String): LineIterator? {
+        return readFile2Iterator(getFileByPath(filePath))
+    }
+
+    /**
+     * 逐行读取文件
+     *
+     * 按需读取，不会将整个文件读入内存，用完需调用 [LineIterator.close]，读到末尾时会自动关闭
+     * <br></br>若已通过 [buildLineIndex] 建立索引且文件未变化，则直接定位到开始行附近，无需从头扫描
+     *
+     * @param file        文件
+     * @param st          开始行数，从 1 开始
+     * @param charsetName 编码格式
+     * @return 行迭代器
+     */
+    @JvmOverloads
+    fun readFile2Iterator(file: File?,
+                          st: Int = 1,
+                          charsetName: String? = null): LineIterator? {
+        if (!isFileExists(file)) return null
+        var fis: FileInputStream? = null
+        var reader: BufferedReader? = null
+        try {
+            val index = LineIndex.load(file!!)
+            var curLine = 1
+            fis = FileInputStream(file)
+            if (index != null && st > 1) {
+                val i = Math.min((st - 1) / index.interval, index.offsets.size - 1)
+                fis.channel.position(index.offsets[i])
+                curLine = i * index.interval + 1
+            }
+            reader = if (isSpace(charsetName)) {
+                BufferedReader(InputStreamReader(fis))
+            } else {
+                BufferedReader(InputStreamReader(fis, charsetName!!))
+            }
+            while (curLine < st && reader.readLine() != null) ++curLine
+            return LineIterator(reader)
         } catch (e: IOException) {
             e.printStackTrace()
+            // 编码不支持时 reader 尚未创建，需单独关闭 fis
+            CloseUtils.closeIO(reader, fis)
             return null
-        } finally {
+        }
+    }
+
+    /**
+     * 建立文件的稀疏行索引，保存在同目录下的 文件名.lineidx 中
+     *
+     * 每隔 interval 行记录一次行首偏移，之后 [readFile2Iterator] 及 [readFile2List] 可直接定位
+     * <br></br>文件修改后索引失效，需重新建立；仅支持 UTF-8、GBK 等兼容 ASCII 换行符的编码
+     *
+     * @param file     文件
+     * @param interval 索引间隔行数
+     * @return `true`: 建立成功<br></br>`false`: 建立失败
+     */
+    @JvmOverloads
+    fun buildLineIndex(file: File?, interval: Int = LineIndex.DEFAULT_INTERVAL): Boolean {
+        if (!isFileExists(file) || interval <= 0) return false
+        try {
+            LineIndex.build(file!!, interval).save(file)
+            return true
+        } catch (e: IOException) {
+            e.printStackTrace()
+            return false
+        }
+    }
+
+    /**
+     * 行迭代器
+     */
+    class LineIterator internal constructor(private val reader: BufferedReader) : Iterator<String>, Closeable {
+        private var nextLine: String? = readLine()
+
+        override fun hasNext(): Boolean {
+            return nextLine != null
+        }
+
+        override fun next(): String {
+            val line = nextLine ?: throw NoSuchElementException()
+            nextLine = readLine()
+            return line
+        }
+
+        override fun close() {
+            nextLine = null
             CloseUtils.closeIO(reader)
         }
+
+        private fun readLine(): String? {
+            try {
+                val line = reader.readLine()
+                if (line == null) CloseUtils.closeIO(reader)
+                return line
+            } catch (e: IOException) {
+                e.printStackTrace()
+                CloseUtils.closeIO(reader)
+                return null
+            }
+        }
+    }
+
+    /**
+     * 稀疏行索引，offsets[i] 为第 i * interval + 1 行的行首偏移
+     */
+    private class LineIndex(val interval: Int,
+                            val length: Long,
+                            val lastModified: Long,
+                            val offsets: LongArray) {
+
+        @Throws(IOException::class)
+        fun save(file: File) {
+            val tmp = File(file.path + INDEX_SUFFIX + ".tmp")
+            var out: DataOutputStream? = null
+            try {
+                out = DataOutputStream(BufferedOutputStream(FileOutputStream(tmp)))
+                out.writeInt(MAGIC)
+                out.writeInt(interval)
+                out.writeLong(length)
+                out.writeLong(lastModified)
+                out.writeInt(offsets.size)
+                for (offset in offsets) out.writeLong(offset)
+            } finally {
+                CloseUtils.closeIO(out)
+            }
+            val indexFile = File(file.path + INDEX_SUFFIX)
+            if (!tmp.renameTo(indexFile) && !(indexFile.delete() && tmp.renameTo(indexFile))) {
+                tmp.delete()
+                throw IOException("rename " + tmp + " failed")
+            }
+        }
+
+        companion object {
+            const val DEFAULT_INTERVAL = 1000
+            private const val INDEX_SUFFIX = ".lineidx"
+            private const val MAGIC = 0x4C494458 // LIDX
+
+            /**
+             * 扫描换行符建立索引，\n、\r、\r\n 均视为换行，与 [BufferedReader.readLine] 一致
+             */
+            @Throws(IOException::class)
+            fun build(file: File, interval: Int): LineIndex {
+                val length = file.length()
+                val lastModified = file.lastModified()
+                var offsets = LongArray(16)
+                var count = 1 // 第 1 行偏移为 0
+                var line = 1L
+                var isPrevCR = false
+                var pos = 0L
+                var input: InputStream? = null
+                try {
+                    input = FileInputStream(file)
+                    val buffer = ByteArray(64 * 1024)
+                    while (true) {
+                        val len = input.read(buffer)
+                        if (len == -1) break
+                        for (i in 0 until len) {
+                            val b = buffer[i]
+                            var lineStart = -1L
+                            if (b == LF) {
+                                lineStart = pos + i + 1
+                            } else if (isPrevCR) {
+                                lineStart = pos + i
+                            }
+                            isPrevCR = b == CR
+                            if (lineStart != -1L && ++line % interval == 1L % interval && lineStart < length) {
+                                if (count == offsets.size) offsets = Arrays.copyOf(offsets, count shl 1)
+                                offsets[count++] = lineStart
+                            }
+                        }
+                        pos += len
+                    }
+                } finally {
+                    CloseUtils.closeIO(input)
+                }
+                return LineIndex(interval, length, lastModified, Arrays.copyOf(offsets, count))
+            }
+
+            /**
+             * @return 索引，不存在或文件已修改时返回 `null`
+             */
+            fun load(file: File): LineIndex? {
+                val indexFile = File(file.path + INDEX_SUFFIX)
+                if (!indexFile.isFile) return null
+                var input: DataInputStream? = null
+                try {
+                    input = DataInputStream(BufferedInputStream(FileInputStream(indexFile)))
+                    if (input.readInt() != MAGIC) return null
+                    val interval = input.readInt()
+                    val length = input.readLong()
+                    val lastModified = input.readLong()
+                    if (interval <= 0 || length != file.length() || lastModified != file.lastModified()) return null
+                    val offsets = LongArray(input.readInt())
+                    for (i in offsets.indices) offsets[i] = input.readLong()
+                    return if (offsets.isEmpty()) null else LineIndex(interval, length, lastModified, offsets)
+                } catch (e: IOException) {
+                    e.printStackTrace()
+                    return null
+                } finally {
+                    CloseUtils.closeIO(input)
+                }
+            }
+
+            private const val LF = '\n'.toByte()
+            private const val CR = '\r'.toByte()
+        }
     }
 
     /**
@@ -592,6 +800,225 @@ object FileIOUtils {
         }
     }
 
+    /**
+     * 打开内存映射追加写入器
+     *
+     * 适合高频追加小记录的场景，用完需调用 [MappedAppender.close]
+     *
+     * @param filePath 文件路径
+     * @return 追加写入器，打开失败返回 `null`
+     */
+    fun openMappedAppender(filePath: String): MappedAppender? {
+        return openMappedAppender(getFileByPath(filePath))
+    }
+
+    /**
+     * 打开内存映射追加写入器
+     *
+     * 适合高频追加小记录的场景，用完需调用 [MappedAppender.close]
+     *
+     * @param file       文件
+     * @param windowSize 初始映射窗口大小，之后每次翻倍，最大 [MappedAppender.MAX_WINDOW_SIZE]
+     * @return 追加写入器，打开失败返回 `null`
+     */
+    @JvmOverloads
+    fun openMappedAppender(file: File?,
+                           windowSize: Int = MappedAppender.DEFAULT_WINDOW_SIZE): MappedAppender? {
+        if (windowSize <= 0 || !createOrExistsFile(file)) return null
+        try {
+            return MappedAppender(file!!, windowSize.toLong())
+        } catch (e: IOException) {
+            e.printStackTrace()
+            return null
+        }
+    }
+
+    /**
+     * 内存映射追加写入器
+     *
+     * 文件按窗口映射，写满后在文件末尾映射下一个更大的窗口，关闭时截断为实际长度
+     * <br></br>未调用 [close] 而进程退出时，文件末尾会残留未截断的 0 字节
+     * <br></br>不是线程安全的，多个线程写入同一实例需在外部同步
+     * <br></br>换窗及关闭时会尽力释放旧窗口的映射，无法释放时由 GC 回收，回收前仍占用地址空间
+     */
+    class MappedAppender internal constructor(file: File, windowSize: Long) : Closeable {
+        private val raf = RandomAccessFile(file, "rw")
+        private val channel = raf.channel
+        private var window: MappedByteBuffer
+        private var nextWindowSize = windowSize
+        private var isRemapped = false
+        private var isClosed = false
+
+        /**
+         * 当前写入位置，即文件实际长度
+         */
+        var position: Long = 0
+            private set
+
+        init {
+            try {
+                position = channel.size()
+                window = map(position)
+            } catch (e: IOException) {
+                CloseUtils.closeIO(raf)
+                throw e
+            }
+        }
+
+        /**
+         * 追加字节数组
+         *
+         * @param bytes 字节数组
+         * @return 写入位置
+         */
+        @Throws(IOException::class)
+        fun append(bytes: ByteArray): Long {
+            return append(bytes, 0, bytes.size)
+        }
+
+        /**
+         * 追加字节数组
+         *
+         * @param bytes  字节数组
+         * @param offset 起始偏移
+         * @param length 长度
+         * @return 写入位置
+         */
+        @Throws(IOException::class)
+        fun append(bytes: ByteArray, offset: Int, length: Int): Long {
+            checkOpen()
+            val start = position
+            var off = offset
+            var remaining = length
+            while (remaining > 0) {
+                if (!window.hasRemaining()) remap()
+                val len = Math.min(remaining, window.remaining())
+                window.put(bytes, off, len)
+                off += len
+                remaining -= len
+                position += len
+            }
+            return start
+        }
+
+        /**
+         * 追加缓冲区中剩余的字节
+         *
+         * @param src 缓冲区
+         * @return 写入位置
+         */
+        @Throws(IOException::class)
+        fun append(src: ByteBuffer): Long {
+            checkOpen()
+            val start = position
+            val limit = src.limit()
+            while (src.hasRemaining()) {
+                if (!window.hasRemaining()) remap()
+                val len = Math.min(src.remaining(), window.remaining())
+                src.limit(src.position() + len)
+                window.put(src)
+                src.limit(limit)
+                position += len
+            }
+            return start
+        }
+
+        /**
+         * 将已写入的内容刷入存储设备
+         */
+        @Throws(IOException::class)
+        fun force() {
+            checkOpen()
+            sync()
+        }
+
+        /**
+         * 刷入并关闭，文件截断为实际长度
+         */
+        @Throws(IOException::class)
+        override fun close() {
+            if (isClosed) return
+            isClosed = true
+            try {
+                sync()
+                unmap(window)
+                channel.truncate(position)
+            } finally {
+                CloseUtils.closeIO(raf)
+            }
+        }
+
+        private fun sync() {
+            window.force()
+            if (isRemapped) {
+                // 之前窗口的脏页仍在页缓存中，交由 fsync 一并刷入
+                channel.force(false)
+                isRemapped = false
+            }
+        }
+
+        private fun remap() {
+            val old = window
+            window = map(position)
+            isRemapped = true
+            // 及时释放旧窗口，避免 32 位设备地址空间被占满
+            unmap(old)
+        }
+
+        private fun map(start: Long): MappedByteBuffer {
+            val size = nextWindowSize
+            nextWindowSize = Math.min(nextWindowSize shl 1, MAX_WINDOW_SIZE.toLong())
+            return channel.map(FileChannel.MapMode.READ_WRITE, start, Math.max(size, 1L))
+        }
+
+        private fun checkOpen() {
+            if (isClosed) throw IOException("appender is closed")
+        }
+
+        companion object {
+            const val DEFAULT_WINDOW_SIZE = 1 shl 20
+            const val MAX_WINDOW_SIZE = 64 shl 20
+
+            /**
+             * 尽力释放映射，释放后不可再访问该缓冲区
+             *
+             * 没有公开接口，只能反射调用：Android 上为 NioUtils.freeDirectBuffer，JVM 上为 Unsafe.invokeCleaner 或 cleaner
+             * <br></br>Android 9 (API 28) 起限制非 SDK 接口，不再调用；不支持或调用失败时不做处理，映射由 GC 回收
+             */
+            private fun unmap(buffer: MappedByteBuffer) {
+                val sdkInt = Build.VERSION.SDK_INT
+                if (sdkInt >= 28) return
+                if (sdkInt > 0) {
+                    try {
+                        Class.forName("java.nio.NioUtils")
+                                .getMethod("freeDirectBuffer", ByteBuffer::class.java)
+                                .invoke(null, buffer)
+                    } catch (ignored: Throwable) {
+                    }
+                    return
+                }
+                // 非 Android 环境，如 JVM 单元测试
+                try {
+                    // JDK 9+
+                    val unsafeClass = Class.forName("sun.misc.Unsafe")
+                    val field = unsafeClass.getDeclaredField("theUnsafe")
+                    field.isAccessible = true
+                    unsafeClass.getMethod("invokeCleaner", ByteBuffer::class.java).invoke(field.get(null), buffer)
+                    return
+                } catch (ignored: Throwable) {
+                }
+                try {
+                    // JDK 8
+                    val cleaner = buffer.javaClass.getMethod("cleaner")
+                    cleaner.isAccessible = true
+                    val clean = cleaner.invoke(buffer) ?: return
+                    clean.javaClass.getMethod("clean").invoke(clean)
+                } catch (ignored: Throwable) {
+                }
+            }
+        }
+    }
+
     /**
      * 设置缓冲区尺寸
      *
@@ -1,13 +1,19 @@
 package com.blankj.utilcode.util
 
 import android.annotation.SuppressLint
+import android.support.annotation.IntRange
 import java.io.*
 import java.net.HttpURLConnection
 import java.net.URL
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
 import java.security.DigestInputStream
 import java.security.MessageDigest
 import java.security.NoSuchAlgorithmException
 import java.util.*
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * <pre>
@@ -24,9 +30,36 @@ object FileUtils {
         fun onReplace(): Boolean
     }
 
+    interface OnProgressListener {
+        /**
+         * 复制或移动进度回调，在调用线程中回调
+         *
+         * @param current 已完成的字节数
+         * @param total   总字节数
+         */
+        fun onProgress(current: Long, total: Long)
+    }
+
 
     private val LINE_SEP = System.getProperty("line.separator")
 
+    private const val TRANSFER_SIZE = 8L shl 20
+
+    private const val LINES_BUFFER_SIZE = 256 shl 10
+    private const val LINES_CHUNK_SIZE = 4L shl 20
+
+    private var sWalkParallelism = 1
+
+    private val THREAD_FACTORY = object : ThreadFactory {
+        private val count = AtomicInteger()
+
+        override fun newThread(r: Runnable): Thread {
+            val thread = Thread(r, "FileUtils-" + count.incrementAndGet())
+            thread.isDaemon = true
+            return thread
+        }
+    }
+
     /**
      * 根据文件路径获取文件
      *
@@ -227,7 +260,8 @@ object FileUtils {
         return copyOrMoveDir(getFileByPath(srcDirPath),
                 getFileByPath(destDirPath),
                 listener,
-                isMove
+                isMove,
+                null
         )
     }
 
@@ -238,12 +272,14 @@ object FileUtils {
      * @param destDir  目标目录
      * @param listener 是否覆盖监听器
      * @param isMove   是否移动
+     * @param progress 进度
      * @return `true`: 复制或移动成功<br></br>`false`: 复制或移动失败
      */
     private fun copyOrMoveDir(srcDir: File?,
                               destDir: File?,
                               listener: OnReplaceListener,
-                              isMove: Boolean): Boolean {
+                              isMove: Boolean,
+                              progress: Progress?): Boolean {
         if (srcDir == null || destDir == null) return false
         // 如果目标目录在源目录中则返回 false，看不懂的话好好想想递归怎么结束
         // srcPath : F:\\MyGithub\\AndroidUtilCode\\utilcode\\src\\test\\res
@@ -263,6 +299,11 @@ object FileUtils {
                 return true
             }
         }
+        // 移动时先尝试直接重命名，同一文件系统内无需复制数据
+        if (isMove && createOrExistsDir(destDir.parentFile) && srcDir.renameTo(destDir)) {
+            progress?.skip(destDir)
+            return true
+        }
         // 目标目录不存在返回 false
         if (!createOrExistsDir(destDir)) return false
         val files = srcDir.listFiles()
@@ -270,13 +311,13 @@ object FileUtils {
             val oneDestFile = File(destPath + file.name)
             if (file.isFile) {
                 // 如果操作失败返回 false
-                if (!copyOrMoveFile(file, oneDestFile, listener, isMove)) return false
+                if (!copyOrMoveFile(file, oneDestFile, listener, isMove, progress)) return false
             } else if (file.isDirectory) {
                 // 如果操作失败返回 false
-                if (!copyOrMoveDir(file, oneDestFile, listener, isMove)) return false
+                if (!copyOrMoveDir(file, oneDestFile, listener, isMove, progress)) return false
             }
         }
-        return !isMove || deleteDir(srcDir)
+        return !isMove || deleteDir(srcDir, 1)
     }
 
     /**
@@ -295,7 +336,8 @@ object FileUtils {
         return copyOrMoveFile(getFileByPath(srcFilePath),
                 getFileByPath(destFilePath),
                 listener,
-                isMove
+                isMove,
+                null
         )
     }
 
@@ -306,12 +348,14 @@ object FileUtils {
      * @param destFile 目标文件
      * @param listener 是否覆盖监听器
      * @param isMove   是否移动
+     * @param progress 进度
      * @return `true`: 复制或移动成功<br></br>`false`: 复制或移动失败
      */
     private fun copyOrMoveFile(srcFile: File?,
                                destFile: File?,
                                listener: OnReplaceListener,
-                               isMove: Boolean): Boolean {
+                               isMove: Boolean,
+                               progress: Progress?): Boolean {
         if (srcFile == null || destFile == null) return false
         // 如果源文件和目标文件相同则返回 false
         if (srcFile == destFile) return false
@@ -328,125 +372,202 @@ object FileUtils {
         }
         // 目标目录不存在返回 false
         if (!createOrExistsDir(destFile.parentFile)) return false
+        // 移动时先尝试直接重命名，跨文件系统失败时再复制后删除
+        if (isMove && srcFile.renameTo(destFile)) {
+            progress?.skip(destFile)
+            return true
+        }
+        return copyFileByChannel(srcFile, destFile, progress) && !(isMove && !deleteFile(srcFile))
+    }
+
+    /**
+     * 通过 FileChannel.transferTo 复制文件，由内核完成数据拷贝
+     *
+     * @param srcFile  源文件
+     * @param destFile 目标文件
+     * @param progress 进度
+     * @return `true`: 复制成功<br></br>`false`: 复制失败
+     */
+    private fun copyFileByChannel(srcFile: File, destFile: File, progress: Progress?): Boolean {
+        var input: FileChannel? = null
+        var output: FileChannel? = null
         try {
-            return FileIOUtils.writeFileFromIS(destFile, FileInputStream(srcFile), false) && !(isMove && !deleteFile(srcFile))
-        } catch (e: FileNotFoundException) {
+            input = FileInputStream(srcFile).channel
+            output = FileOutputStream(destFile).channel
+            val size = input!!.size()
+            var position = 0L
+            while (position < size) {
+                val count = input.transferTo(position, Math.min(size - position, TRANSFER_SIZE), output)
+                if (count <= 0) break
+                position += count
+                progress?.add(count)
+            }
+            return position == size
+        } catch (e: IOException) {
             e.printStackTrace()
             return false
+        } finally {
+            CloseUtils.closeIO(input, output)
+        }
+    }
+
+    /**
+     * 复制或移动的进度，累计字节数并回调
+     */
+    private class Progress(private val listener: OnProgressListener, private val total: Long) {
+        private var current = 0L
+
+        fun add(count: Long) {
+            current += count
+            listener.onProgress(current, total)
         }
 
+        /**
+         * 重命名完成的文件或目录，按目标的大小计入进度
+         */
+        fun skip(dest: File) {
+            add(if (dest.isDirectory) getDirLength(dest, 1) else dest.length())
+        }
     }
 
     /**
      * 复制目录
      *
-     * @param srcDirPath  源目录路径
-     * @param destDirPath 目标目录路径
-     * @param listener    是否覆盖监听器
+     * @param srcDirPath       源目录路径
+     * @param destDirPath      目标目录路径
+     * @param listener         是否覆盖监听器
+     * @param progressListener 进度监听器
      * @return `true`: 复制成功<br></br>`false`: 复制失败
      */
+    @JvmOverloads
     fun copyDir(srcDirPath: String,
                 destDirPath: String,
-                listener: OnReplaceListener): Boolean {
-        return copyDir(getFileByPath(srcDirPath), getFileByPath(destDirPath), listener)
+                listener: OnReplaceListener,
+                progressListener: OnProgressListener? = null): Boolean {
+        return copyDir(getFileByPath(srcDirPath), getFileByPath(destDirPath), listener, progressListener)
     }
 
     /**
      * 复制目录
      *
-     * @param srcDir   源目录
-     * @param destDir  目标目录
-     * @param listener 是否覆盖监听器
+     * @param srcDir           源目录
+     * @param destDir          目标目录
+     * @param listener         是否覆盖监听器
+     * @param progressListener 进度监听器
      * @return `true`: 复制成功<br></br>`false`: 复制失败
      */
+    @JvmOverloads
     fun copyDir(srcDir: File?,
                 destDir: File?,
-                listener: OnReplaceListener): Boolean {
-        return copyOrMoveDir(srcDir, destDir, listener, false)
+                listener: OnReplaceListener,
+                progressListener: OnProgressListener? = null): Boolean {
+        val progress = if (progressListener == null) null else Progress(progressListener, getDirLength(srcDir, 1))
+        return copyOrMoveDir(srcDir, destDir, listener, false, progress)
     }
 
     /**
      * 复制文件
      *
-     * @param srcFilePath  源文件路径
-     * @param destFilePath 目标文件路径
-     * @param listener     是否覆盖监听器
+     * @param srcFilePath      源文件路径
+     * @param destFilePath     目标文件路径
+     * @param listener         是否覆盖监听器
+     * @param progressListener 进度监听器
      * @return `true`: 复制成功<br></br>`false`: 复制失败
      */
+    @JvmOverloads
     fun copyFile(srcFilePath: String,
                  destFilePath: String,
-                 listener: OnReplaceListener): Boolean {
-        return copyFile(getFileByPath(srcFilePath), getFileByPath(destFilePath), listener)
+                 listener: OnReplaceListener,
+                 progressListener: OnProgressListener? = null): Boolean {
+        return copyFile(getFileByPath(srcFilePath), getFileByPath(destFilePath), listener, progressListener)
     }
 
     /**
      * 复制文件
      *
-     * @param srcFile  源文件
-     * @param destFile 目标文件
-     * @param listener 是否覆盖监听器
+     * @param srcFile          源文件
+     * @param destFile         目标文件
+     * @param listener         是否覆盖监听器
+     * @param progressListener 进度监听器
      * @return `true`: 复制成功<br></br>`false`: 复制失败
      */
+    @JvmOverloads
     fun copyFile(srcFile: File?,
                  destFile: File?,
-                 listener: OnReplaceListener): Boolean {
-        return copyOrMoveFile(srcFile, destFile, listener, false)
+                 listener: OnReplaceListener,
+                 progressListener: OnProgressListener? = null): Boolean {
+        val progress = if (progressListener == null) null else Progress(progressListener, getFileLength(srcFile))
+        return copyOrMoveFile(srcFile, destFile, listener, false, progress)
     }
 
     /**
      * 移动目录
      *
-     * @param srcDirPath  源目录路径
-     * @param destDirPath 目标目录路径
-     * @param listener    是否覆盖监听器
+     * @param srcDirPath       源目录路径
+     * @param destDirPath      目标目录路径
+     * @param listener         是否覆盖监听器
+     * @param progressListener 进度监听器
      * @return `true`: 移动成功<br></br>`false`: 移动失败
      */
+    @JvmOverloads
     fun moveDir(srcDirPath: String,
                 destDirPath: String,
-                listener: OnReplaceListener): Boolean {
-        return moveDir(getFileByPath(srcDirPath), getFileByPath(destDirPath), listener)
+                listener: OnReplaceListener,
+                progressListener: OnProgressListener? = null): Boolean {
+        return moveDir(getFileByPath(srcDirPath), getFileByPath(destDirPath), listener, progressListener)
     }
 
     /**
      * 移动目录
      *
-     * @param srcDir   源目录
-     * @param destDir  目标目录
-     * @param listener 是否覆盖监听器
+     * @param srcDir           源目录
+     * @param destDir          目标目录
+     * @param listener         是否覆盖监听器
+     * @param progressListener 进度监听器
      * @return `true`: 移动成功<br></br>`false`: 移动失败
      */
+    @JvmOverloads
     fun moveDir(srcDir: File?,
                 destDir: File?,
-                listener: OnReplaceListener): Boolean {
-        return copyOrMoveDir(srcDir, destDir, listener, true)
+                listener: OnReplaceListener,
+                progressListener: OnProgressListener? = null): Boolean {
+        val progress = if (progressListener == null) null else Progress(progressListener, getDirLength(srcDir, 1))
+        return copyOrMoveDir(srcDir, destDir, listener, true, progress)
     }
 
     /**
      * 移动文件
      *
-     * @param srcFilePath  源文件路径
-     * @param destFilePath 目标文件路径
-     * @param listener     是否覆盖监听器
+     * @param srcFilePath      源文件路径
+     * @param destFilePath     目标文件路径
+     * @param listener         是否覆盖监听器
+     * @param progressListener 进度监听器
      * @return `true`: 移动成功<br></br>`false`: 移动失败
      */
+    @JvmOverloads
     fun moveFile(srcFilePath: String,
                  destFilePath: String,
-                 listener: OnReplaceListener): Boolean {
-        return moveFile(getFileByPath(srcFilePath), getFileByPath(destFilePath), listener)
+                 listener: OnReplaceListener,
+                 progressListener: OnProgressListener? = null): Boolean {
+        return moveFile(getFileByPath(srcFilePath), getFileByPath(destFilePath), listener, progressListener)
     }
 
     /**
      * 移动文件
      *
-     * @param srcFile  源文件
-     * @param destFile 目标文件
-     * @param listener 是否覆盖监听器
+     * @param srcFile          源文件
+     * @param destFile         目标文件
+     * @param listener         是否覆盖监听器
+     * @param progressListener 进度监听器
      * @return `true`: 移动成功<br></br>`false`: 移动失败
      */
+    @JvmOverloads
     fun moveFile(srcFile: File?,
                  destFile: File?,
-                 listener: OnReplaceListener): Boolean {
-        return copyOrMoveFile(srcFile, destFile, listener, true)
+                 listener: OnReplaceListener,
+                 progressListener: OnProgressListener? = null): Boolean {
+        val progress = if (progressListener == null) null else Progress(progressListener, getFileLength(srcFile))
+        return copyOrMoveFile(srcFile, destFile, listener, true, progress)
     }
 
     /**
@@ -462,27 +583,20 @@ object FileUtils {
     /**
      * 删除目录
      *
-     * @param dir 目录
+     * @param dir         目录
+     * @param parallelism 并行线程数，默认为 [setWalkParallelism] 设置的值
      * @return `true`: 删除成功<br></br>`false`: 删除失败
      */
-    fun deleteDir(dir: File?): Boolean {
+    @JvmOverloads
+    fun deleteDir(dir: File?, @IntRange(from = 1) parallelism: Int = sWalkParallelism): Boolean {
         if (dir == null) return false
         // 目录不存在返回 true
         if (!dir.exists()) return true
         // 不是目录返回 false
         if (!dir.isDirectory) return false
-        // 现在文件存在且是文件夹
-        val files = dir.listFiles()
-        if (files != null && files.isNotEmpty()) {
-            for (file in files) {
-                if (file.isFile) {
-                    if (!file.delete()) return false
-                } else if (file.isDirectory) {
-                    if (!deleteDir(file)) return false
-                }
-            }
-        }
-        return dir.delete()
+        // 现在文件存在且是文件夹，子目录删空后再删除自身
+        val visitor = DeleteVisitor(dir, null)
+        return walk(dir, visitor, parallelism) && !visitor.isFailed
     }
 
     /**
@@ -570,20 +684,37 @@ object FileUtils {
         if (!dir.exists()) return true
         // 不是目录返回 false
         if (!dir.isDirectory) return false
-        // 现在文件存在且是文件夹
-        val files = dir.listFiles()
-        if (files != null && files.isNotEmpty()) {
-            files
-                    .filter { filter.accept(it) }
-                    .forEach {
-                        if (it.isFile) {
-                            if (!it.delete()) return false
-                        } else if (it.isDirectory) {
-                            if (!deleteDir(it)) return false
-                        }
-                    }
+        // 现在文件存在且是文件夹，过滤器只作用于第一层，在调用线程中执行
+        val files = dir.listFiles(filter) ?: return true
+        if (files.isEmpty()) return true
+        val visitor = DeleteVisitor(dir, HashSet(Arrays.asList(*files)))
+        return walk(dir, visitor) && !visitor.isFailed
+    }
+
+    private class DeleteVisitor(private val root: File, private val accepted: Set<File>?) : FileVisitor() {
+        @Volatile
+        var isFailed = false
+            private set
+
+        override fun preVisitDir(dir: File): Boolean {
+            return accepted == null || dir === root || dir.parentFile != root || accepted.contains(dir)
+        }
+
+        override fun visitFile(file: File) {
+            if (accepted != null && file.parentFile == root && !accepted.contains(file)) return
+            if (!file.delete()) fail()
+        }
+
+        override fun postVisitDir(dir: File) {
+            // 带过滤器时只删除目录下的内容
+            if (accepted != null && dir === root) return
+            if (!dir.delete()) fail()
+        }
+
+        private fun fail() {
+            isFailed = true
+            cancel()
         }
-        return true
     }
 
     /**
@@ -659,7 +790,6 @@ object FileUtils {
                     list.add(file)
                 }
                 if (isRecursive && file.isDirectory) {
-
                     list.addAll(listFilesInDirWithFilter(file, filter, true)!!)
                 }
             }
@@ -667,6 +797,151 @@ object FileUtils {
         return list
     }
 
+    /**
+     * 设置目录遍历的并行度
+     *
+     * 默认为 1，即在调用线程中顺序遍历
+     * <br></br>作用于 [walk]、[getDirLength]、[deleteDir]、[deleteFilesInDirWithFilter] 等递归操作的默认值，
+     * 大于 1 时每次遍历会创建线程池，适合较大的目录
+     *
+     * @param parallelism 并行线程数，1 表示在调用线程中遍历
+     */
+    fun setWalkParallelism(@IntRange(from = 1) parallelism: Int) {
+        sWalkParallelism = parallelism
+    }
+
+    /**
+     * 遍历目录
+     *
+     * 通过 [FileVisitor] 流式回调，不生成中间链表；parallelism 大于 1 时以多线程并行遍历
+     *
+     * @param dir         目录
+     * @param visitor     访问器，并行时会在多个线程中同时回调
+     * @param parallelism 并行线程数，1 表示在调用线程中遍历
+     * @return `true`: 遍历完成<br></br>`false`: 不是目录或遍历被取消
+     */
+    @JvmOverloads
+    fun walk(dir: File?,
+             visitor: FileVisitor,
+             @IntRange(from = 1) parallelism: Int = sWalkParallelism): Boolean {
+        if (!isDir(dir)) return false
+        Walker(visitor, parallelism).walk(dir!!)
+        return !visitor.isCancelled
+    }
+
+    /**
+     * 目录遍历访问器
+     *
+     * 并行遍历时各方法会在多个线程中同时回调，需保证线程安全
+     */
+    abstract class FileVisitor {
+        @Volatile
+        var isCancelled = false
+            private set
+
+        /**
+         * 取消遍历，可在任意线程调用
+         */
+        fun cancel() {
+            isCancelled = true
+        }
+
+        /**
+         * 进入目录前回调，也会对遍历的根目录回调
+         *
+         * @param dir 目录
+         * @return `true`: 遍历该目录<br></br>`false`: 跳过该目录
+         */
+        open fun preVisitDir(dir: File): Boolean {
+            return true
+        }
+
+        /**
+         * 访问文件
+         *
+         * @param file 文件
+         */
+        open fun visitFile(file: File) {}
+
+        /**
+         * 目录下的内容全部访问后回调，遍历取消后不再回调
+         *
+         * @param dir 目录
+         */
+        open fun postVisitDir(dir: File) {}
+    }
+
+    /**
+     * 每个目录一个节点，子目录全部完成后回调 [FileVisitor.postVisitDir] 并通知父节点
+     */
+    private class Node(val dir: File, val parent: Node?) {
+        val pending = AtomicInteger(1)
+    }
+
+    private class Walker(private val visitor: FileVisitor, parallelism: Int) {
+        private val executor: ThreadPoolExecutor? = if (parallelism <= 1) null else
+            ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                    LinkedBlockingQueue<Runnable>(), THREAD_FACTORY)
+        private val stack = ArrayDeque<Node>()
+        private val pending = AtomicInteger()
+        private val done = CountDownLatch(1)
+
+        fun walk(root: File) {
+            if (!visitor.preVisitDir(root)) return
+            if (executor == null) {
+                stack.push(Node(root, null))
+                while (!stack.isEmpty()) visit(stack.pop())
+                return
+            }
+            try {
+                submit(Node(root, null))
+                done.await()
+            } catch (e: InterruptedException) {
+                visitor.cancel()
+                Thread.currentThread().interrupt()
+            } finally {
+                executor.shutdown()
+            }
+        }
+
+        private fun submit(node: Node) {
+            pending.incrementAndGet()
+            executor!!.execute {
+                try {
+                    visit(node)
+                } catch (e: RuntimeException) {
+                    e.printStackTrace()
+                    visitor.cancel()
+                } finally {
+                    if (pending.decrementAndGet() == 0) done.countDown()
+                }
+            }
+        }
+
+        private fun visit(node: Node) {
+            val files = if (visitor.isCancelled) null else node.dir.listFiles()
+            if (files != null) {
+                for (file in files) {
+                    if (visitor.isCancelled) break
+                    if (file.isDirectory) {
+                        if (visitor.preVisitDir(file)) {
+                            node.pending.incrementAndGet()
+                            val child = Node(file, node)
+                            if (executor == null) stack.push(child) else submit(child)
+                        }
+                    } else {
+                        visitor.visitFile(file)
+                    }
+                }
+            }
+            var n: Node? = node
+            while (n != null && n.pending.decrementAndGet() == 0) {
+                if (!visitor.isCancelled) visitor.postVisitDir(n.dir)
+                n = n.parent
+            }
+        }
+    }
+
     /**
      * 获取文件最后修改的毫秒时间戳
      *
@@ -737,36 +1012,78 @@ object FileUtils {
      * 获取文件行数
      *
      * 比 readLine 要快很多
+     * <br></br>parallelism 大于 1 且文件较大时分块并行统计
      *
-     * @param file 文件
-     * @return 文件行数
+     * @param file        文件
+     * @param parallelism 并行线程数，1 表示在调用线程中统计
+     * @return 文件行数，并行统计时有分块失败返回 -1
      */
-    fun getFileLines(file: File?): Int {
+    @JvmOverloads
+    fun getFileLines(file: File?, @IntRange(from = 1) parallelism: Int = 1): Int {
+        val separator = (if (LINE_SEP.endsWith("\n")) '\n' else '\r').toByte()
         var count = 1
-        var inputStream: InputStream? = null
+        var channel: FileChannel? = null
         try {
-            inputStream = BufferedInputStream(FileInputStream(file!!))
-            val buffer = ByteArray(1024)
-            var readChars: Int = -1
-            if (LINE_SEP.endsWith("\n")) {
-                while ({ readChars = inputStream.read(buffer, 0, 1024);readChars }() != -1) {
-                    (0 until readChars)
-                            .asSequence()
-                            .filter { buffer[it] == '\n'.toByte() }
-                            .forEach { ++count }
-                }
-            } else {
-                while ({ readChars = inputStream.read(buffer, 0, 1024);readChars }() != -1) {
-                    (0 until readChars)
-                            .asSequence()
-                            .filter { buffer[it] == '\r'.toByte() }
-                            .forEach { ++count }
+            val ch = FileInputStream(file!!).channel
+            channel = ch
+            val size = ch.size()
+            val chunks = ((size + LINES_CHUNK_SIZE - 1) / LINES_CHUNK_SIZE).toInt()
+            val threads = Math.min(parallelism, chunks)
+            if (threads <= 1) return count + countBytes(ch, separator, 0, size)
+            val executor = ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    LinkedBlockingQueue<Runnable>(), THREAD_FACTORY)
+            try {
+                val tasks = ArrayList<Callable<Int>>(threads)
+                for (i in 0 until threads) {
+                    // 每个线程按步长领取分块，共用一个 channel 做定位读取
+                    tasks.add(Callable {
+                        var n = 0
+                        var chunk = i
+                        while (chunk < chunks) {
+                            val st = chunk * LINES_CHUNK_SIZE
+                            n += countBytes(ch, separator, st, Math.min(st + LINES_CHUNK_SIZE, size))
+                            chunk += threads
+                        }
+                        n
+                    })
                 }
+                for (future in executor.invokeAll(tasks)) count += future.get()
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+                return -1
+            } catch (e: ExecutionException) {
+                // 缺少分块的结果不可信，不返回部分计数
+                e.cause?.printStackTrace()
+                return -1
+            } finally {
+                executor.shutdown()
             }
         } catch (e: IOException) {
             e.printStackTrace()
         } finally {
-            CloseUtils.closeIO(inputStream)
+            CloseUtils.closeIO(channel)
+        }
+        return count
+    }
+
+    /**
+     * 统计 [st, end) 范围内某字节出现的次数
+     */
+    @Throws(IOException::class)
+    private fun countBytes(channel: FileChannel, b: Byte, st: Long, end: Long): Int {
+        val array = ByteArray(Math.min(LINES_BUFFER_SIZE.toLong(), end - st).toInt())
+        val buffer = ByteBuffer.wrap(array)
+        var count = 0
+        var position = st
+        while (position < end) {
+            buffer.clear()
+            if (end - position < array.size) buffer.limit((end - position).toInt())
+            val len = channel.read(buffer, position)
+            if (len == -1) break
+            for (i in 0 until len) {
+                if (array[i] == b) ++count
+            }
+            position += len
         }
         return count
     }
@@ -827,23 +1144,20 @@ object FileUtils {
     /**
      * 获取目录长度
      *
-     * @param dir 目录
+     * @param dir         目录
+     * @param parallelism 并行线程数，默认为 [setWalkParallelism] 设置的值
      * @return 目录长度
      */
-    fun getDirLength(dir: File?): Long {
+    @JvmOverloads
+    fun getDirLength(dir: File?, @IntRange(from = 1) parallelism: Int = sWalkParallelism): Long {
         if (!isDir(dir)) return -1
-        var len: Long = 0
-        val files = dir!!.listFiles()
-        if (files != null && files.isNotEmpty()) {
-            for (file in files) {
-                if (file.isDirectory) {
-                    len += getDirLength(file)
-                } else {
-                    len += file.length()
-                }
+        val len = AtomicLong()
+        walk(dir, object : FileVisitor() {
+            override fun visitFile(file: File) {
+                len.addAndGet(file.length())
             }
-        }
-        return len
+        }, parallelism)
+        return len.get()
     }
 
     /**
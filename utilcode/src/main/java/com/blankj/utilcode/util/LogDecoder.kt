@@ -0,0 +1,167 @@
+package com.blankj.utilcode.util
+
+import java.io.*
+import java.text.SimpleDateFormat
+import java.util.*
+import java.util.zip.GZIPInputStream
+
+/**
+ * <pre>
+ * author: Blankj
+ * blog  : http://blankj.com
+ * time  : 2026/10/17
+ * desc  : 二进制 log 文件解码
+ *
+ * 将 [LogUtils.FILE_FORMAT_BINARY] 格式的 log 文件还原为文本，不依赖 Android 环境
+ *
+ * 命令行用法：java -cp utilcode.jar com.blankj.utilcode.util.LogDecoder file...
+ *
+ * 文件格式：
+ *
+ *  * 文件头  : "LOGB" + 版本号，追加写入时会再次写入，解码时据此重置状态
+ *  * 设备信息: [RECORD_INFO] + 长度 + UTF-8 文本
+ *  * tag 定义: [RECORD_TAG] + tag id + 长度 + UTF-8 文本
+ *  * 日志    : [RECORD_LOG] + 与上条的时间差（zigzag）+ 级别 + tag id + 线程 id + 长度 + UTF-8 文本
+ *
+ * 整数均为 varint 编码
+</pre> *
+ */
+class LogDecoder(input: InputStream) {
+
+    private val input: InputStream = if (input is BufferedInputStream) input else BufferedInputStream(input)
+    private val format = SimpleDateFormat("HH:mm:ss.SSS ")
+    private val date = Date()
+    private val tags = ArrayList<String?>()
+    private var buffer = ByteArray(256)
+    private var lastTime = 0L
+
+    /**
+     * 解码全部记录
+     *
+     * @param out 输出
+     * @throws IOException 文件损坏或读取失败
+     */
+    @Throws(IOException::class)
+    fun decode(out: Appendable) {
+        while (true) {
+            val kind = input.read()
+            when (kind) {
+                -1 -> return
+                MAGIC[0].toInt() -> readHeader()
+                RECORD_INFO -> out.append(readString())
+                RECORD_TAG -> {
+                    val id = readVarint().toInt()
+                    while (tags.size <= id) tags.add(null)
+                    tags[id] = readString()
+                }
+                RECORD_LOG -> {
+                    lastTime += zigzagDecode(readVarint())
+                    val level = input.read()
+                    val tagId = readVarint().toInt()
+                    readVarint() // 线程 id，文本格式中不输出
+                    val msg = readString()
+                    date.time = lastTime
+                    out.append(format.format(date))
+                            .append(if (level in LogUtils.V..LogUtils.A) LEVELS[level - LogUtils.V] else '?')
+                            .append('/')
+                            .append(if (tagId < tags.size) tags[tagId] else null)
+                            .append(msg)
+                            .append(LINE_SEP)
+                }
+                else -> throw IOException("unknown record: " + kind)
+            }
+        }
+    }
+
+    private fun readHeader() {
+        for (i in 1 until MAGIC.size) {
+            if (input.read() != MAGIC[i].toInt()) throw IOException("not a binary log file")
+        }
+        val version = input.read()
+        if (version != VERSION) throw IOException("unsupported version: " + version)
+        lastTime = 0
+        tags.clear()
+    }
+
+    private fun readString(): String {
+        val len = readVarint().toInt()
+        if (buffer.size < len) buffer = ByteArray(Math.max(len, buffer.size shl 1))
+        var read = 0
+        while (read < len) {
+            val n = input.read(buffer, read, len - read)
+            if (n == -1) throw EOFException()
+            read += n
+        }
+        return String(buffer, 0, len, Charsets.UTF_8)
+    }
+
+    private fun readVarint(): Long {
+        var result = 0L
+        var shift = 0
+        while (shift < 64) {
+            val b = input.read()
+            if (b == -1) throw EOFException()
+            result = result or ((b and 0x7f).toLong() shl shift)
+            if (b and 0x80 == 0) return result
+            shift += 7
+        }
+        throw IOException("malformed varint")
+    }
+
+    companion object {
+
+        internal val MAGIC = byteArrayOf('L'.toByte(), 'O'.toByte(), 'G'.toByte(), 'B'.toByte())
+        internal const val VERSION = 1
+        internal const val RECORD_INFO = 1
+        internal const val RECORD_TAG = 2
+        internal const val RECORD_LOG = 3
+
+        private val LEVELS = charArrayOf('V', 'D', 'I', 'W', 'E', 'A')
+        private val LINE_SEP = System.getProperty("line.separator")
+
+        /**
+         * 解码二进制 log 文件，支持滚动后的 .gz 文件
+         *
+         * @param file 文件
+         * @param out  输出
+         * @return `true`: 成功<br></br>`false`: 失败
+         */
+        fun decode(file: File, out: Appendable): Boolean {
+            var input: InputStream? = null
+            try {
+                input = FileInputStream(file)
+                if (file.name.endsWith(".gz")) input = GZIPInputStream(input)
+                LogDecoder(input).decode(out)
+                return true
+            } catch (e: IOException) {
+                e.printStackTrace()
+                return false
+            } finally {
+                CloseUtils.closeIO(input)
+            }
+        }
+
+        internal fun zigzagEncode(n: Long): Long {
+            return n shl 1 xor (n shr 63)
+        }
+
+        internal fun zigzagDecode(n: Long): Long {
+            return n.ushr(1) xor -(n and 1)
+        }
+
+        @JvmStatic
+        fun main(args: Array<String>) {
+            if (args.isEmpty()) {
+                System.err.println("usage: LogDecoder file...")
+                System.exit(1)
+            }
+            val out = BufferedWriter(OutputStreamWriter(System.out, Charsets.UTF_8))
+            var success = true
+            for (path in args) {
+                if (!decode(File(path), out)) success = false
+            }
+            out.flush()
+            if (!success) System.exit(1)
+        }
+    }
+}
@@ -7,20 +7,17 @@ import android.os.Environment
 import android.support.annotation.IntDef
 import android.support.annotation.IntRange
 import android.util.Log
-import org.json.JSONArray
-import org.json.JSONException
-import org.json.JSONObject
 import java.io.*
 import java.text.SimpleDateFormat
 import java.util.*
-import java.util.concurrent.Callable
-import java.util.concurrent.ExecutionException
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
-import javax.xml.transform.OutputKeys
-import javax.xml.transform.TransformerFactory
-import javax.xml.transform.stream.StreamResult
-import javax.xml.transform.stream.StreamSource
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.LockSupport
+import java.util.zip.GZIPOutputStream
 
 /**
  * <pre>
@@ -36,6 +33,14 @@ object LogUtils {
     @kotlin.annotation.Retention(AnnotationRetention.SOURCE)
     private annotation class TYPE
 
+    @IntDef(OVERFLOW_DROP.toLong(), OVERFLOW_BLOCK.toLong(), OVERFLOW_SAMPLE.toLong())
+    @kotlin.annotation.Retention(AnnotationRetention.SOURCE)
+    private annotation class OVERFLOW
+
+    @IntDef(FILE_FORMAT_TEXT.toLong(), FILE_FORMAT_BINARY.toLong())
+    @kotlin.annotation.Retention(AnnotationRetention.SOURCE)
+    private annotation class FILE_FORMAT
+
     class Config internal constructor() {
         init {
             if (sDefaultDir == null) {
@@ -121,6 +126,83 @@ object LogUtils {
             return this
         }
 
+        /**
+         * 设置单个 log 文件最大大小，超过后滚动为新文件并在后台压缩旧文件
+         *
+         * @param maxSize 最大大小，单位：字节，0 表示不限制
+         */
+        fun setFileMaxSize(@IntRange(from = 0) maxSize: Long): Config {
+            sFileMaxSize = maxSize
+            return this
+        }
+
+        /**
+         * 设置 log 文件最大数量，超过后删除最旧的文件
+         *
+         * @param maxCount 最大数量，0 表示不限制
+         */
+        fun setFileMaxCount(@IntRange(from = 0) maxCount: Int): Config {
+            sFileMaxCount = maxCount
+            return this
+        }
+
+        /**
+         * 设置 log 文件最大总大小，超过后删除最旧的文件
+         *
+         * @param maxTotalSize 最大总大小，单位：字节，0 表示不限制
+         */
+        fun setFileMaxTotalSize(@IntRange(from = 0) maxTotalSize: Long): Config {
+            sFileMaxTotalSize = maxTotalSize
+            return this
+        }
+
+        /**
+         * 设置 json 及 xml 格式化后的最大长度，超出部分截断
+         *
+         * @param maxLen 最大长度，0 表示不限制
+         */
+        fun setFormatMaxLength(@IntRange(from = 0) maxLen: Int): Config {
+            sFormatMaxLen = maxLen
+            return this
+        }
+
+        /**
+         * 设置 log 文件格式
+         *
+         *  * [FILE_FORMAT_TEXT]  : 文本，文件后缀为 .txt
+         *  * [FILE_FORMAT_BINARY]: 二进制，文件后缀为 .bin，体积更小，可用 [LogDecoder] 还原为文本
+         *
+         * @param fileFormat 文件格式
+         */
+        fun setFileFormat(@FILE_FORMAT fileFormat: Int): Config {
+            sFileFormat = fileFormat
+            return this
+        }
+
+        /**
+         * 设置文件日志队列大小，需在首次写文件前设置
+         *
+         * @param queueSize 队列大小，会向上取整为 2 的幂
+         */
+        fun setFileQueueSize(@IntRange(from = 1) queueSize: Int): Config {
+            sFileQueueSize = queueSize
+            return this
+        }
+
+        /**
+         * 设置文件日志队列满时的策略
+         *
+         *  * [OVERFLOW_DROP]  : 丢弃新日志
+         *  * [OVERFLOW_BLOCK] : 阻塞等待，默认策略，不丢失日志
+         *  * [OVERFLOW_SAMPLE]: 队列将满时 W 以下级别的日志按比例采样，满时丢弃
+         *
+         * @param overflowPolicy 策略
+         */
+        fun setFileOverflowPolicy(@OVERFLOW overflowPolicy: Int): Config {
+            sFileOverflowPolicy = overflowPolicy
+            return this
+        }
+
         override fun toString(): String {
             return ("switch: " + sLogSwitch
                     + LINE_SEP + "console: " + sLog2ConsoleSwitch
@@ -132,12 +214,21 @@ object LogUtils {
                     + LINE_SEP + "border: " + sLogBorderSwitch
                     + LINE_SEP + "consoleFilter: " + T[sConsoleFilter - V]
                     + LINE_SEP + "fileFilter: " + T[sFileFilter - V]
-                    + LINE_SEP + "stackDeep: " + sStackDeep)
+                    + LINE_SEP + "stackDeep: " + sStackDeep
+                    + LINE_SEP + "fileMaxSize: " + sFileMaxSize
+                    + LINE_SEP + "fileMaxCount: " + sFileMaxCount
+                    + LINE_SEP + "fileMaxTotalSize: " + sFileMaxTotalSize
+                    + LINE_SEP + "formatMaxLength: " + sFormatMaxLen
+                    + LINE_SEP + "fileFormat: " + sFileFormat
+                    + LINE_SEP + "fileQueueSize: " + sFileQueueSize
+                    + LINE_SEP + "fileOverflowPolicy: " + sFileOverflowPolicy)
         }
     }
 
     private class TagHead internal constructor(internal var tag: String, internal var consoleHead: Array<String>?, internal var fileHead: String)
 
+    private class CallSite internal constructor(internal val className: String, internal val location: String)
+
 
     const val V = Log.VERBOSE
     const val D = Log.DEBUG
@@ -146,8 +237,18 @@ object LogUtils {
     const val E = Log.ERROR
     const val A = Log.ASSERT
 
+    const val OVERFLOW_DROP = 0
+    const val OVERFLOW_BLOCK = 1
+    const val OVERFLOW_SAMPLE = 2
+
+    const val FILE_FORMAT_TEXT = 0
+    const val FILE_FORMAT_BINARY = 1
+
     private val T = charArrayOf('V', 'D', 'I', 'W', 'E', 'A')
 
+    private const val MAX_CALL_SITES = 512
+    private val sCallSites = ConcurrentHashMap<StackTraceElement, CallSite>()
+
     private const val FILE = 0x10
     private const val JSON = 0x20
     private const val XML = 0x30
@@ -164,6 +265,7 @@ object LogUtils {
     private val MIDDLE_BORDER = MIDDLE_CORNER + MIDDLE_DIVIDER + MIDDLE_DIVIDER
     private val BOTTOM_BORDER = BOTTOM_CORNER + SIDE_DIVIDER + SIDE_DIVIDER
     private const val MAX_LEN = 4000
+    private const val INDENT = "    "
     @SuppressLint("SimpleDateFormat")
     private val FORMAT = SimpleDateFormat("MM-dd HH:mm:ss.SSS ")
     private const val NOTHING = "log nothing"
@@ -174,7 +276,8 @@ object LogUtils {
         return mConfig
     }
 
-    private var sExecutor: ExecutorService? = null
+    @Volatile
+    private var sFileAppender: FileAppender? = null
     private var sDefaultDir: String? = null// log 默认存储目录
     private var sDir: String? = null       // log 存储目录
     private var sFilePrefix = "util"// log 文件前缀
@@ -188,55 +291,170 @@ object LogUtils {
     private var sConsoleFilter = V     // log 控制台过滤器
     private var sFileFilter = V     // log 文件过滤器
     private var sStackDeep = 1     // log 栈深度
+    private var sFileMaxSize = 0L   // log 单个文件最大大小
+    private var sFileMaxCount = 0   // log 文件最大数量
+    private var sFileMaxTotalSize = 0L  // log 文件最大总大小
+    private var sFileFormat = FILE_FORMAT_TEXT  // log 文件格式
+    private var sFileQueueSize = 1024  // log 文件队列大小
+    private var sFormatMaxLen = 0   // json 及 xml 格式化后的最大长度
+    private var sFileOverflowPolicy = OVERFLOW_BLOCK // log 文件队列满时的策略，默认阻塞
+
+    /**
+     * 判断该级别的 log 是否会输出
+     *
+     * 拼接开销较大的 log 前可先判断，避免无用的拼接及参数数组分配
+     *
+     * @param type 级别
+     * @return `true`: 是<br></br>`false`: 否
+     */
+    fun isLoggable(@TYPE type: Int): Boolean {
+        return sLogSwitch && (sLog2ConsoleSwitch && type >= sConsoleFilter || sLog2FileSwitch && type >= sFileFilter)
+    }
 
     fun v(vararg contents: Any) {
         log(V, sGlobalTag, *contents)
     }
 
+    fun v(content: Any) {
+        if (isLoggable(V)) log(V, sGlobalTag, content)
+    }
+
+    fun vLazy(supplier: () -> Any) {
+        if (isLoggable(V)) log(V, sGlobalTag, supplier())
+    }
+
     fun vTag(tag: String, vararg contents: Any) {
         log(V, tag, *contents)
     }
 
+    fun vTag(tag: String, content: Any) {
+        if (isLoggable(V)) log(V, tag, content)
+    }
+
+    fun vTagLazy(tag: String, supplier: () -> Any) {
+        if (isLoggable(V)) log(V, tag, supplier())
+    }
+
     fun d(vararg contents: Any) {
         log(D, sGlobalTag, *contents)
     }
 
+    fun d(content: Any) {
+        if (isLoggable(D)) log(D, sGlobalTag, content)
+    }
+
+    fun dLazy(supplier: () -> Any) {
+        if (isLoggable(D)) log(D, sGlobalTag, supplier())
+    }
+
     fun dTag(tag: String, vararg contents: Any) {
         log(D, tag, *contents)
     }
 
+    fun dTag(tag: String, content: Any) {
+        if (isLoggable(D)) log(D, tag, content)
+    }
+
+    fun dTagLazy(tag: String, supplier: () -> Any) {
+        if (isLoggable(D)) log(D, tag, supplier())
+    }
+
     fun i(vararg contents: Any) {
         log(I, sGlobalTag, *contents)
     }
 
+    fun i(content: Any) {
+        if (isLoggable(I)) log(I, sGlobalTag, content)
+    }
+
+    fun iLazy(supplier: () -> Any) {
+        if (isLoggable(I)) log(I, sGlobalTag, supplier())
+    }
+
     fun iTag(tag: String, vararg contents: Any) {
         log(I, tag, *contents)
     }
 
+    fun iTag(tag: String, content: Any) {
+        if (isLoggable(I)) log(I, tag, content)
+    }
+
+    fun iTagLazy(tag: String, supplier: () -> Any) {
+        if (isLoggable(I)) log(I, tag, supplier())
+    }
+
     fun w(vararg contents: Any) {
         log(W, sGlobalTag, *contents)
     }
 
+    fun w(content: Any) {
+        if (isLoggable(W)) log(W, sGlobalTag, content)
+    }
+
+    fun wLazy(supplier: () -> Any) {
+        if (isLoggable(W)) log(W, sGlobalTag, supplier())
+    }
+
     fun wTag(tag: String, vararg contents: Any) {
         log(W, tag, *contents)
     }
 
+    fun wTag(tag: String, content: Any) {
+        if (isLoggable(W)) log(W, tag, content)
+    }
+
+    fun wTagLazy(tag: String, supplier: () -> Any) {
+        if (isLoggable(W)) log(W, tag, supplier())
+    }
+
     fun e(vararg contents: Any) {
         log(E, sGlobalTag, *contents)
     }
 
+    fun e(content: Any) {
+        if (isLoggable(E)) log(E, sGlobalTag, content)
+    }
+
+    fun eLazy(supplier: () -> Any) {
+        if (isLoggable(E)) log(E, sGlobalTag, supplier())
+    }
+
     fun eTag(tag: String, vararg contents: Any) {
         log(E, tag, *contents)
     }
 
+    fun eTag(tag: String, content: Any) {
+        if (isLoggable(E)) log(E, tag, content)
+    }
+
+    fun eTagLazy(tag: String, supplier: () -> Any) {
+        if (isLoggable(E)) log(E, tag, supplier())
+    }
+
     fun a(vararg contents: Any) {
         log(A, sGlobalTag, *contents)
     }
 
+    fun a(content: Any) {
+        if (isLoggable(A)) log(A, sGlobalTag, content)
+    }
+
+    fun aLazy(supplier: () -> Any) {
+        if (isLoggable(A)) log(A, sGlobalTag, supplier())
+    }
+
     fun aTag(tag: String, vararg contents: Any) {
         log(A, tag, *contents)
     }
 
+    fun aTag(tag: String, content: Any) {
+        if (isLoggable(A)) log(A, tag, content)
+    }
+
+    fun aTagLazy(tag: String, supplier: () -> Any) {
+        if (isLoggable(A)) log(A, tag, supplier())
+    }
+
     fun file(content: Any) {
         log(FILE or D, sGlobalTag, content)
     }
@@ -285,6 +503,20 @@ object LogUtils {
         log(XML or type, tag, content)
     }
 
+    /**
+     * 等待已提交的文件日志写入文件
+     *
+     * 用于崩溃等进程即将退出的场景
+     *
+     * @param timeout 最长等待时间，单位：毫秒
+     * @return `true`: 全部写入<br></br>`false`: 超时
+     */
+    @JvmOverloads
+    fun flush(timeout: Long = 3000): Boolean {
+        val appender = sFileAppender ?: return true
+        return appender.flush(timeout)
+    }
+
     private fun log(type: Int, tag: String?, vararg contents: Any) {
         if (!sLogSwitch || !sLog2ConsoleSwitch && !sLog2FileSwitch) return
         val typeLow = type and 0x0f
@@ -304,36 +536,16 @@ object LogUtils {
         var tag1 = tag
         if (!sTagIsSpace && !sLogHeadSwitch) {
             tag1 = sGlobalTag
-        } else {
+        } else if (sLogHeadSwitch || isSpace(tag1)) {// 自定义了 tag 且不显示头部信息时无需获取调用栈
             val stackTrace = Throwable().stackTrace
-            var targetElement = stackTrace[3]
-            var fileName: String? = targetElement.fileName
-            var className: String
-            // 混淆可能会导致获取为空 加-keepattributes SourceFile,LineNumberTable
-            if (fileName == null) {
-                className = targetElement.className
-                val classNameInfo = className.split("\\.".toRegex()).dropLastWhile({ it.isEmpty() }).toTypedArray()
-                if (classNameInfo.isNotEmpty()) {
-                    className = classNameInfo[classNameInfo.size - 1]
-                }
-                val index = className.indexOf('$')
-                if (index != -1) {
-                    className = className.substring(0, index)
-                }
-                fileName = className + ".java"
-            } else {
-                val index = fileName.indexOf('.')// 混淆可能导致文件名被改变从而找不到"."
-                className = if (index == -1) fileName else fileName.substring(0, index)
-            }
-            if (sTagIsSpace) tag1 = if (isSpace(tag1)) className else tag1
+            val site = getCallSite(stackTrace[3])
+            if (sTagIsSpace) tag1 = if (isSpace(tag1)) site.className else tag1
             if (sLogHeadSwitch) {
                 val tName = Thread.currentThread().name
-                val head = Formatter()
-                        .format("%s, %s(%s:%d)",
-                                tName,
-                                targetElement.methodName,
-                                fileName,
-                                targetElement.lineNumber)
+                val head = StringBuilder(tName.length + site.location.length + 2)
+                        .append(tName)
+                        .append(", ")
+                        .append(site.location)
                         .toString()
                 val fileHead = " [$head]: "
                 if (sStackDeep <= 1) {
@@ -341,18 +553,15 @@ object LogUtils {
                 } else {
                     val consoleHead = arrayOfNulls<String>(Math.min(sStackDeep, stackTrace.size - 3))
                     consoleHead[0] = head
-                    val spaceLen = tName.length + 2
-                    val space = Formatter().format("%" + spaceLen + "s", "").toString()
+                    val space = CharArray(tName.length + 2)
+                    Arrays.fill(space, ' ')
                     var i = 1
                     val len = consoleHead.size
                     while (i < len) {
-                        targetElement = stackTrace[i + 3]
-                        consoleHead[i] = Formatter()
-                                .format("%s%s(%s:%d)",
-                                        space,
-                                        targetElement.methodName,
-                                        targetElement.fileName,
-                                        targetElement.lineNumber)
+                        val location = getCallSite(stackTrace[i + 3]).location
+                        consoleHead[i] = StringBuilder(space.size + location.length)
+                                .append(space)
+                                .append(location)
                                 .toString()
                         ++i
                     }
@@ -363,16 +572,62 @@ object LogUtils {
         return TagHead(tag1!!, null, ": ")
     }
 
+    /**
+     * 获取调用位置信息
+     *
+     * 同一调用位置的类名、文件名及位置字符串只解析一次
+     *
+     * @param element 栈元素
+     * @return 调用位置信息
+     */
+    private fun getCallSite(element: StackTraceElement): CallSite {
+        var site = sCallSites[element]
+        if (site == null) {
+            var fileName: String? = element.fileName
+            var className: String
+            // 混淆可能会导致获取为空 加-keepattributes SourceFile,LineNumberTable
+            if (fileName == null) {
+                className = element.className
+                className = className.substring(className.lastIndexOf('.') + 1)
+                val index = className.indexOf('$')
+                if (index != -1) {
+                    className = className.substring(0, index)
+                }
+                fileName = className + ".java"
+            } else {
+                val index = fileName.indexOf('.')// 混淆可能导致文件名被改变从而找不到"."
+                className = if (index == -1) fileName else fileName.substring(0, index)
+            }
+            val location = StringBuilder()
+                    .append(element.methodName)
+                    .append('(')
+                    .append(fileName)
+                    .append(':')
+                    .append(element.lineNumber)
+                    .append(')')
+                    .toString()
+            site = CallSite(className, location)
+            if (sCallSites.size >= MAX_CALL_SITES) sCallSites.clear()
+            sCallSites.put(element, site)
+        }
+        return site
+    }
+
     private fun processBody(type: Int, vararg contents: Any?): String {
         var body = NULL
         if (contents.isNotEmpty()) {
             if (contents.size == 1) {
                 val any = contents[0]
                 if (any != null) body = any.toString()
-                if (type == JSON) {
-                    body = formatJson(body)
-                } else if (type == XML) {
-                    body = formatXml(body)
+                try {
+                    if (type == JSON) {
+                        body = formatJson(body)
+                    } else if (type == XML) {
+                        body = formatXml(body)
+                    }
+                } catch (e: RuntimeException) {
+                    // 格式有误时输出原文
+                    e.printStackTrace()
                 }
             } else {
                 val sb = StringBuilder()
@@ -395,36 +650,176 @@ object LogUtils {
         return if (body.isEmpty()) NOTHING else body
     }
 
-    private fun formatJson(json: String): String {
-        var json1 = json
-        try {
-            if (json1.startsWith("{")) {
-                json1 = JSONObject(json1).toString(4)
-            } else if (json1.startsWith("[")) {
-                json1 = JSONArray(json1).toString(4)
+    /**
+     * 单遍扫描缩进 json，不解析为对象，超过 [sFormatMaxLen] 时截断
+     *
+     * 括号不匹配、字符串未结束等格式错误时返回原文
+     */
+    internal fun formatJson(json: String): String {
+        val start = skipWhitespace(json, 0)
+        if (start == json.length || json[start] != '{' && json[start] != '[') return json
+        val maxLen = if (sFormatMaxLen > 0) sFormatMaxLen else Int.MAX_VALUE
+        val sb = StringBuilder(Math.min(json.length + (json.length shr 1), maxLen) + 64)
+        val closers = StringBuilder() // 未闭合括号对应的结束符
+        var inString = false
+        var i = start
+        val len = json.length
+        while (i < len) {
+            if (sb.length >= maxLen) return appendTruncated(sb, len - i)
+            val c = json[i]
+            if (inString) {
+                sb.append(c)
+                if (c == '\\' && i + 1 < len) {
+                    sb.append(json[++i])
+                } else if (c == '"') {
+                    inString = false
+                }
+            } else if (closers.isEmpty() && i > start) {
+                // 根节点之后只允许空白
+                if (c > ' ') return json
+            } else {
+                when (c) {
+                    '"' -> {
+                        sb.append(c)
+                        inString = true
+                    }
+                    '{', '[' -> {
+                        val closer = if (c == '{') '}' else ']'
+                        sb.append(c)
+                        val next = skipWhitespace(json, i + 1)
+                        if (next < len && json[next] == closer) {
+                            sb.append(closer)
+                            i = next
+                        } else {
+                            closers.append(closer)
+                            appendIndent(sb, closers.length)
+                        }
+                    }
+                    '}', ']' -> {
+                        if (closers.isEmpty() || closers[closers.length - 1] != c) return json
+                        closers.setLength(closers.length - 1)
+                        appendIndent(sb, closers.length)
+                        sb.append(c)
+                    }
+                    ',' -> {
+                        sb.append(c)
+                        appendIndent(sb, closers.length)
+                    }
+                    ':' -> sb.append(c).append(' ')
+                    ' ', '\t', '\n', '\r' -> {
+                    }
+                    else -> sb.append(c)
+                }
             }
-        } catch (e: JSONException) {
-            e.printStackTrace()
+            ++i
         }
+        return if (inString || closers.isNotEmpty()) json else sb.toString()
+    }
 
-        return json1
+    /**
+     * 单遍扫描缩进 xml，不构建文档树，超过 [sFormatMaxLen] 时截断
+     *
+     * 标签未闭合、开始与结束标签不匹配等格式错误时返回原文
+     */
+    internal fun formatXml(xml: String): String {
+        val start = skipWhitespace(xml, 0)
+        if (start == xml.length || xml[start] != '<') return xml
+        val maxLen = if (sFormatMaxLen > 0) sFormatMaxLen else Int.MAX_VALUE
+        val sb = StringBuilder(Math.min(xml.length + (xml.length shr 1), maxLen) + 64)
+        val names = ArrayList<String>() // 未闭合的标签名
+        val len = xml.length
+        var lastIsOpen = false // 上一个标签为开始标签
+        var i = start
+        while (i < len) {
+            if (sb.length >= maxLen) return appendTruncated(sb, len - i)
+            if (xml[i] != '<') {
+                val end = xml.indexOf('<', i).let { if (it == -1) len else it }
+                val textStart = skipWhitespace(xml, i)
+                var textEnd = end
+                while (textEnd > textStart && xml[textEnd - 1] <= ' ') --textEnd
+                if (textStart < textEnd) {
+                    // 仅含文本的节点不换行
+                    if (!lastIsOpen || !xml.startsWith("</", end)) appendIndent(sb, names.size)
+                    sb.append(xml, textStart, textEnd)
+                }
+                i = end
+                continue
+            }
+            val end = findTagEnd(xml, i)
+            if (end == -1) return xml
+            val isClose = xml.startsWith("</", i)
+            val isSpecial = xml.startsWith("<?", i) || xml.startsWith("<!", i)
+            val isEmpty = !isClose && !isSpecial && end - 2 > i && xml[end - 2] == '/'
+            if (isClose) {
+                if (names.isEmpty() || names.removeAt(names.size - 1) != getTagName(xml, i + 2, end)) return xml
+                if (!lastIsOpen) appendIndent(sb, names.size)
+            } else {
+                appendIndent(sb, names.size)
+            }
+            sb.append(xml, i, end)
+            lastIsOpen = !isClose && !isSpecial && !isEmpty
+            if (lastIsOpen) names.add(getTagName(xml, i + 1, end))
+            i = end
+        }
+        return if (names.isEmpty()) sb.toString() else xml
     }
 
-    private fun formatXml(xml: String): String {
-        var xml1 = xml
-        try {
-            val xmlInput = StreamSource(StringReader(xml1))
-            val xmlOutput = StreamResult(StringWriter())
-            val transformer = TransformerFactory.newInstance().newTransformer()
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes")
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4")
-            transformer.transform(xmlInput, xmlOutput)
-            xml1 = xmlOutput.writer.toString().replaceFirst(">".toRegex(), ">" + LINE_SEP)
-        } catch (e: Exception) {
-            e.printStackTrace()
+    /**
+     * @return 标签结束后的位置，未结束返回 -1
+     */
+    private fun findTagEnd(xml: String, start: Int): Int {
+        val len = xml.length
+        val terminator = when {
+            xml.startsWith("<!--", start) -> "-->"
+            xml.startsWith("<![CDATA[", start) -> "]]>"
+            xml.startsWith("<?", start) -> "?>"
+            else -> null
+        }
+        if (terminator != null) {
+            val end = xml.indexOf(terminator, start)
+            return if (end == -1) -1 else end + terminator.length
         }
+        var quote = 0.toChar()
+        var i = start + 1
+        while (i < len) {
+            val c = xml[i]
+            if (quote.toInt() != 0) {
+                if (c == quote) quote = 0.toChar()
+            } else if (c == '"' || c == '\'') {
+                quote = c
+            } else if (c == '>') {
+                return i + 1
+            }
+            ++i
+        }
+        return -1
+    }
+
+    private fun getTagName(xml: String, start: Int, end: Int): String {
+        var i = start
+        while (i < end && xml[i] > ' ' && xml[i] != '/' && xml[i] != '>') ++i
+        return xml.substring(start, i)
+    }
 
-        return xml1
+    private fun skipWhitespace(s: String, start: Int): Int {
+        var i = start
+        val len = s.length
+        while (i < len && s[i] <= ' ') ++i
+        return i
+    }
+
+    private fun appendIndent(sb: StringBuilder, level: Int) {
+        if (sb.isEmpty()) return
+        sb.append(LINE_SEP)
+        for (i in 0 until level) sb.append(INDENT)
+    }
+
+    private fun appendTruncated(sb: StringBuilder, remain: Int): String {
+        return sb.append(LINE_SEP)
+                .append("... ")
+                .append(remain)
+                .append(" chars truncated")
+                .toString()
     }
 
     private fun print2Console(type: Int,
@@ -452,75 +847,63 @@ object LogUtils {
         }
     }
 
+    /**
+     * 按 [MAX_LEN] 分段输出，开启边框时按行加左边框
+     *
+     * 通过下标扫描换行符及分段位置，行前缀复用同一 StringBuilder
+     */
     private fun printMsg(type: Int, tag: String, msg: String) {
         val len = msg.length
-        val countOfSub = len / MAX_LEN
-        if (countOfSub > 0) {
-            var index = 0
-            for (i in 0 until countOfSub) {
-                printSubMsg(type, tag, msg.substring(index, index + MAX_LEN))
-                index += MAX_LEN
+        if (!sLogBorderSwitch) {
+            if (len <= MAX_LEN) {
+                Log.println(type, tag, msg)
+                return
             }
-            if (index != len) {
-                printSubMsg(type, tag, msg.substring(index, len))
+            var index = 0
+            while (index < len) {
+                val end = Math.min(index + MAX_LEN, len)
+                Log.println(type, tag, msg.substring(index, end))
+                index = end
             }
-        } else {
-            printSubMsg(type, tag, msg)
-        }
-    }
-
-    private fun printSubMsg(type: Int, tag: String, msg: String) {
-        if (!sLogBorderSwitch) {
-            Log.println(type, tag, msg)
             return
         }
-        val lines = msg.split(LINE_SEP.toRegex()).dropLastWhile({ it.isEmpty() }).toTypedArray()
-        for (line in lines) {
-            Log.println(type, tag, LEFT_BORDER + line)
+        val sepLen = LINE_SEP.length
+        val sb = StringBuilder(LEFT_BORDER.length + Math.min(len, MAX_LEN)).append(LEFT_BORDER)
+        var next = msg.indexOf(LINE_SEP)
+        var index = 0
+        while (index < len) {
+            val end = Math.min(index + MAX_LEN, len)
+            var subEnd = end
+            // 同 split 一样忽略段尾的空行
+            while (subEnd - index >= sepLen && msg.startsWith(LINE_SEP, subEnd - sepLen)) subEnd -= sepLen
+            var lineStart = index
+            while (lineStart < subEnd) {
+                if (next != -1 && next < lineStart) next = msg.indexOf(LINE_SEP, lineStart)
+                val lineEnd = if (next == -1 || next >= subEnd) subEnd else next
+                sb.setLength(LEFT_BORDER.length)
+                sb.append(msg, lineStart, lineEnd)
+                Log.println(type, tag, sb.toString())
+                lineStart = lineEnd + sepLen
+            }
+            index = end
         }
     }
 
     private fun print2File(type: Int, tag: String, msg: String) {
-        val now = Date(System.currentTimeMillis())
-        val format = FORMAT.format(now)
-        val date = format.substring(0, 5)
-        val time = format.substring(6)
-        val fullPath = (if (sDir == null) sDefaultDir else sDir) + sFilePrefix + "-" + date + ".txt"
-        if (!createOrExistsFile(fullPath)) {
-            Log.e(tag, "log to $fullPath failed!")
-            return
-        }
-        val sb = StringBuilder()
-        sb.append(time)
-                .append(T[type - V])
-                .append("/")
-                .append(tag)
-                .append(msg)
-                .append(LINE_SEP)
-        val content = sb.toString()
-        if (input2File(content, fullPath)) {
-            Log.d(tag, "log to $fullPath success!")
-        } else {
-            Log.e(tag, "log to $fullPath failed!")
-        }
-    }
-
-    private fun createOrExistsFile(filePath: String): Boolean {
-        val file = File(filePath)
-        if (file.exists()) return file.isFile
-        if (!createOrExistsDir(file.parentFile)) return false
-        try {
-            val isCreate = file.createNewFile()
-            if (isCreate) printDeviceInfo(filePath)
-            return isCreate
-        } catch (e: IOException) {
-            e.printStackTrace()
-            return false
+        var appender = sFileAppender
+        if (appender == null) {
+            synchronized(LogUtils::class.java) {
+                appender = sFileAppender
+                if (appender == null) {
+                    appender = FileAppender(sFileQueueSize)
+                    sFileAppender = appender
+                }
+            }
         }
-
+        appender!!.append(LogEvent(System.currentTimeMillis(), type, tag, msg, Thread.currentThread().id), sFileOverflowPolicy)
     }
 
-    private fun printDeviceInfo(filePath: String) {
+    private fun getDeviceInfo(): String {
         var versionName = ""
         var versionCode = 0
         try {
@@ -535,7 +918,7 @@ object LogUtils {
             e.printStackTrace()
         }
 
-        val head = "************* Log Head ****************" +
+        return "************* Log Head ****************" +
                 "\nDevice Manufacturer: " + Build.MANUFACTURER +// 设备厂商
 
                 "\nDevice Model       : " + Build.MODEL +// 设备型号
@@ -547,7 +930,6 @@ object LogUtils {
                 "\nApp VersionName    : " + versionName +
                 "\nApp VersionCode    : " + versionCode +
                 "\n************* Log Head ****************\n\n"
-        input2File(head, filePath)
     }
 
     private fun createOrExistsDir(file: File?): Boolean {
@@ -567,39 +949,493 @@ object LogUtils {
         return true
     }
 
-    private fun input2File(input: String, filePath: String): Boolean {
-        if (sExecutor == null) {
-            sExecutor = Executors.newSingleThreadExecutor()
+    private class LogEvent(val time: Long, val type: Int, val tag: String, val msg: String, val threadId: Long)
+
+    /**
+     * 有界无锁多生产者单消费者环形队列
+     *
+     * 每个槽位带有序号，生产者 CAS 抢占写入位置，消费者按序号判断槽位是否可读
+     */
+    private class RingBuffer<E>(capacity: Int) {
+        private val capacity: Int
+        private val mask: Int
+        private val buffer: AtomicReferenceArray<E>
+        private val sequences: AtomicLongArray
+        private val head = AtomicLong()
+        @Volatile
+        private var tail = 0L
+
+        init {
+            var cap = 1
+            while (cap < capacity) cap = cap shl 1
+            this.capacity = cap
+            mask = cap - 1
+            buffer = AtomicReferenceArray(cap)
+            sequences = AtomicLongArray(cap)
+            for (i in 0 until cap) sequences.set(i, i.toLong())
+        }
+
+        fun offer(e: E): Boolean {
+            while (true) {
+                val pos = head.get()
+                val index = (pos and mask.toLong()).toInt()
+                val dif = sequences.get(index) - pos
+                if (dif == 0L) {
+                    if (head.compareAndSet(pos, pos + 1)) {
+                        buffer.lazySet(index, e)
+                        sequences.lazySet(index, pos + 1)
+                        return true
+                    }
+                } else if (dif < 0) {
+                    return false
+                }
+            }
+        }
+
+        /**
+         * 仅消费者线程调用
+         */
+        fun poll(): E? {
+            val pos = tail
+            val index = (pos and mask.toLong()).toInt()
+            if (sequences.get(index) != pos + 1) return null
+            val e = buffer.get(index)
+            buffer.lazySet(index, null)
+            sequences.lazySet(index, pos + capacity)
+            tail = pos + 1
+            return e
+        }
+
+        /**
+         * @return 已写入的总数
+         */
+        fun produced(): Long {
+            return head.get()
+        }
+
+        fun size(): Int {
+            return (head.get() - tail).toInt()
+        }
+
+        fun capacity(): Int {
+            return capacity
+        }
+    }
+
+    /**
+     * 异步文件日志
+     *
+     * 调用线程只将日志放入无锁队列，由后台线程批量格式化并写入，文件保持打开
+     */
+    private class FileAppender(queueSize: Int) : Runnable {
+        private val queue = RingBuffer<LogEvent>(queueSize)
+        private val consumed = AtomicLong()
+        private val dropped = AtomicLong()
+        private val sampled = AtomicLong()
+        private var reportedDropped = 0L
+        private val thread = Thread(this, "LogUtils-file")
+        @Volatile
+        private var waiting = false
+
+        private var writer: Writer? = null
+        private var encoder: BinaryEncoder? = null
+        private var counter: CountingOutputStream? = null
+        private var executor: ExecutorService? = null // 压缩及清理旧文件
+        private var filePath: String? = null
+        private var fileDate: String? = null
+        private var fileDir: String? = null
+        private var filePrefix: String? = null
+        private var fileFormat = FILE_FORMAT_TEXT
+        private var fileSuffix = TXT_SUFFIX
+        private val dayFormat = SimpleDateFormat("MM-dd")
+        private var dayStart = 0L
+        private var dayEnd = 0L
+        private var day: String? = null
+        private val date = Date()
+        private val sb = StringBuilder()
+
+        init {
+            thread.isDaemon = true
+            thread.start()
+        }
+
+        fun append(event: LogEvent, policy: Int) {
+            if (policy == OVERFLOW_SAMPLE && event.type < W
+                    && queue.size() >= queue.capacity() - (queue.capacity() shr 2)
+                    && sampled.incrementAndGet() % SAMPLE_RATE != 0L) {
+                dropped.incrementAndGet()
+                return
+            }
+            while (!queue.offer(event)) {
+                if (policy != OVERFLOW_BLOCK) {
+                    dropped.incrementAndGet()
+                    return
+                }
+                wakeUp()
+                LockSupport.parkNanos(BLOCK_PARK_NANOS)
+            }
+            if (waiting) wakeUp()
+        }
+
+        fun flush(timeout: Long): Boolean {
+            val target = queue.produced()
+            val deadline = System.currentTimeMillis() + timeout
+            while (consumed.get() < target) {
+                if (System.currentTimeMillis() > deadline) return false
+                wakeUp()
+                LockSupport.parkNanos(BLOCK_PARK_NANOS)
+            }
+            return true
+        }
+
+        private fun wakeUp() {
+            LockSupport.unpark(thread)
         }
-        val submit = sExecutor!!.submit(Callable {
-            var bw: BufferedWriter? = null
+
+        override fun run() {
+            while (true) {
+                var event = queue.poll()
+                if (event == null) {
+                    waiting = true
+                    event = queue.poll()
+                    if (event == null) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS)
+                        waiting = false
+                        continue
+                    }
+                    waiting = false
+                }
+                var count = 0L
+                while (event != null) {
+                    write(event)
+                    ++count
+                    if (count >= BATCH_SIZE) break
+                    event = queue.poll()
+                }
+                try {
+                    writer?.flush()
+                    encoder?.flush()
+                } catch (e: IOException) {
+                    e.printStackTrace()
+                    closeWriter()
+                }
+                if (sFileMaxSize > 0 && counter != null && counter!!.count >= sFileMaxSize) {
+                    rollOver()
+                }
+                consumed.addAndGet(count)
+            }
+        }
+
+        private fun write(event: LogEvent) {
+            if (!ensureWriter(getDay(event.time))) {
+                Log.e(event.tag, "log to $filePath failed!")
+                return
+            }
             try {
-                bw = BufferedWriter(FileWriter(filePath, true))
-                bw.write(input)
-                return@Callable true
+                val droppedCount = dropped.get()
+                if (droppedCount != reportedDropped) {
+                    write(event.time, W, "LogUtils", ": " + (droppedCount - reportedDropped) + " logs dropped", event.threadId)
+                    reportedDropped = droppedCount
+                }
+                write(event.time, event.type, event.tag, event.msg, event.threadId)
             } catch (e: IOException) {
                 e.printStackTrace()
-                return@Callable false
-            } finally {
-                try {
-                    if (bw != null) {
-                        bw.close()
+                closeWriter()
+            }
+        }
+
+        private fun write(time: Long, type: Int, tag: String, msg: String, threadId: Long) {
+            val encoder = encoder
+            if (encoder != null) {
+                encoder.writeLog(time, type, tag, msg, threadId)
+                return
+            }
+            date.time = time
+            sb.append(FORMAT.format(date), 6, 19)
+                    .append(T[type - V])
+                    .append("/")
+                    .append(tag)
+                    .append(msg)
+                    .append(LINE_SEP)
+            writer!!.append(sb)
+            sb.setLength(0)
+        }
+
+        /**
+         * 仅在跨天时重新格式化日期
+         */
+        private fun getDay(time: Long): String {
+            if (time < dayStart || time >= dayEnd) {
+                val calendar = Calendar.getInstance()
+                calendar.timeInMillis = time
+                calendar.set(Calendar.HOUR_OF_DAY, 0)
+                calendar.set(Calendar.MINUTE, 0)
+                calendar.set(Calendar.SECOND, 0)
+                calendar.set(Calendar.MILLISECOND, 0)
+                dayStart = calendar.timeInMillis
+                calendar.add(Calendar.DAY_OF_MONTH, 1)
+                dayEnd = calendar.timeInMillis
+                day = dayFormat.format(Date(time))
+            }
+            return day!!
+        }
+
+        /**
+         * 日期或配置变化时才重新打开文件，否则复用已打开的文件
+         */
+        private fun ensureWriter(date: String): Boolean {
+            val dir = if (sDir == null) sDefaultDir else sDir
+            if (counter != null && date == fileDate && dir == fileDir
+                    && sFilePrefix == filePrefix && sFileFormat == fileFormat) return true
+            val isDateChanged = counter != null && date != fileDate
+            closeWriter()
+            fileDate = date
+            fileDir = dir
+            filePrefix = sFilePrefix
+            fileFormat = sFileFormat
+            fileSuffix = if (fileFormat == FILE_FORMAT_BINARY) BIN_SUFFIX else TXT_SUFFIX
+            val path = dir + sFilePrefix + "-" + date + fileSuffix
+            filePath = path
+            val file = File(path)
+            val isNew = !file.exists()
+            if (!isNew && !file.isFile || !createOrExistsDir(file.parentFile)) return false
+            if (isDateChanged) trim(dir!!, sFilePrefix, file)
+            try {
+                val c = CountingOutputStream(FileOutputStream(file, true), file.length())
+                counter = c
+                if (fileFormat == FILE_FORMAT_BINARY) {
+                    val e = BinaryEncoder(BufferedOutputStream(c, 8192))
+                    encoder = e
+                    e.writeHeader()
+                    if (isNew) e.writeInfo(getDeviceInfo())
+                } else {
+                    val w = BufferedWriter(OutputStreamWriter(c))
+                    writer = w
+                    if (isNew) w.write(getDeviceInfo())
+                }
+                return true
+            } catch (e: IOException) {
+                e.printStackTrace()
+                closeWriter()
+                return false
+            }
+        }
+
+        private fun closeWriter() {
+            CloseUtils.closeIO(writer, encoder, counter)
+            writer = null
+            encoder = null
+            counter = null
+        }
+
+        /**
+         * 当前文件超过最大大小时，重命名为 prefix-MM-dd-N.txt（或 .bin）并在后台压缩
+         */
+        private fun rollOver() {
+            val path = filePath ?: return
+            val dir = fileDir ?: return
+            val prefix = filePrefix ?: return
+            closeWriter()
+            val file = File(path)
+            val suffix = fileSuffix
+            val rolled = File(path.substring(0, path.length - suffix.length) + "-" + (getMaxRollIndex(file, suffix) + 1) + suffix)
+            if (!file.renameTo(rolled)) {
+                Log.e("LogUtils", "roll over $path failed!")
+                return
+            }
+            getExecutor().execute {
+                if (compress(rolled)) rolled.delete()
+                trimFiles(dir, prefix, file)
+            }
+        }
+
+        private fun getMaxRollIndex(file: File, suffix: String): Int {
+            val prefix = file.name.substring(0, file.name.length - suffix.length) + "-"
+            var max = 0
+            file.parentFile.list()?.forEach { name ->
+                if (name.startsWith(prefix)) {
+                    val end = name.indexOf(suffix, prefix.length)
+                    if (end != -1) {
+                        try {
+                            max = Math.max(max, Integer.parseInt(name.substring(prefix.length, end)))
+                        } catch (ignore: NumberFormatException) {
+                        }
                     }
-                } catch (e: IOException) {
-                    e.printStackTrace()
                 }
+            }
+            return max
+        }
 
+        private fun trim(dir: String, prefix: String, current: File) {
+            if (sFileMaxCount <= 0 && sFileMaxTotalSize <= 0) return
+            getExecutor().execute { trimFiles(dir, prefix, current) }
+        }
+
+        private fun getExecutor(): ExecutorService {
+            if (executor == null) {
+                executor = Executors.newSingleThreadExecutor()
             }
-        })
-        try {
-            return submit.get()
-        } catch (e: InterruptedException) {
-            e.printStackTrace()
-        } catch (e: ExecutionException) {
-            e.printStackTrace()
+            return executor!!
+        }
+
+        /**
+         * 删除最旧的 log 文件，直到数量与总大小均不超过限制
+         */
+        private fun trimFiles(dir: String, prefix: String, current: File) {
+            val maxCount = sFileMaxCount
+            val maxTotalSize = sFileMaxTotalSize
+            if (maxCount <= 0 && maxTotalSize <= 0) return
+            val files = File(dir).listFiles { file ->
+                val name = file.name
+                file.isFile && name.startsWith("$prefix-")
+                        && (name.endsWith(TXT_SUFFIX) || name.endsWith(TXT_SUFFIX + GZ_SUFFIX)
+                        || name.endsWith(BIN_SUFFIX) || name.endsWith(BIN_SUFFIX + GZ_SUFFIX))
+            } ?: return
+            Arrays.sort(files) { o1, o2 -> java.lang.Long.compare(o1.lastModified(), o2.lastModified()) }
+            var count = files.size
+            var totalSize = 0L
+            for (file in files) totalSize += file.length()
+            for (file in files) {
+                if ((maxCount <= 0 || count <= maxCount) && (maxTotalSize <= 0 || totalSize <= maxTotalSize)) break
+                if (file == current) continue
+                val length = file.length()
+                if (file.delete()) {
+                    --count
+                    totalSize -= length
+                }
+            }
+        }
+
+        private fun compress(file: File): Boolean {
+            var input: InputStream? = null
+            var output: OutputStream? = null
+            try {
+                input = FileInputStream(file)
+                output = GZIPOutputStream(FileOutputStream(file.path + GZ_SUFFIX))
+                val buffer = ByteArray(8192)
+                var len: Int
+                while (true) {
+                    len = input.read(buffer)
+                    if (len == -1) break
+                    output.write(buffer, 0, len)
+                }
+                output.finish()
+                File(file.path + GZ_SUFFIX).setLastModified(file.lastModified())
+                return true
+            } catch (e: IOException) {
+                e.printStackTrace()
+                File(file.path + GZ_SUFFIX).delete()
+                return false
+            } finally {
+                CloseUtils.closeIO(input, output)
+            }
+        }
+
+        companion object {
+            private const val TXT_SUFFIX = ".txt"
+            private const val BIN_SUFFIX = ".bin"
+            private const val GZ_SUFFIX = ".gz"
+            private const val BATCH_SIZE = 256
+            private const val SAMPLE_RATE = 10
+            private const val BLOCK_PARK_NANOS = 100_000L
+            private const val IDLE_PARK_NANOS = 1_000_000_000L
+        }
+    }
+
+    /**
+     * 二进制 log 编码，格式见 [LogDecoder]
+     *
+     * tag 在每个文件内首次出现时写入定义，之后只写 id
+     */
+    internal class BinaryEncoder(private val out: OutputStream) : Closeable {
+        private val tagIds = HashMap<String, Int>()
+        private var buffer = ByteArray(256)
+        private var position = 0
+        private var lastTime = 0L
+
+        fun writeHeader() {
+            ensureCapacity(LogDecoder.MAGIC.size + 1)
+            System.arraycopy(LogDecoder.MAGIC, 0, buffer, position, LogDecoder.MAGIC.size)
+            position += LogDecoder.MAGIC.size
+            buffer[position++] = LogDecoder.VERSION.toByte()
+            writeBuffer()
+        }
+
+        fun writeInfo(info: String) {
+            writeVarint(LogDecoder.RECORD_INFO.toLong())
+            writeString(info)
+            writeBuffer()
+        }
+
+        fun writeLog(time: Long, type: Int, tag: String, msg: String, threadId: Long) {
+            var tagId = tagIds[tag]
+            if (tagId == null) {
+                tagId = tagIds.size
+                tagIds.put(tag, tagId)
+                writeVarint(LogDecoder.RECORD_TAG.toLong())
+                writeVarint(tagId.toLong())
+                writeString(tag)
+            }
+            writeVarint(LogDecoder.RECORD_LOG.toLong())
+            writeVarint(LogDecoder.zigzagEncode(time - lastTime))
+            lastTime = time
+            ensureCapacity(1)
+            buffer[position++] = type.toByte()
+            writeVarint(tagId.toLong())
+            writeVarint(threadId)
+            writeString(msg)
+            writeBuffer()
+        }
+
+        fun flush() {
+            out.flush()
         }
 
-        return false
+        override fun close() {
+            out.close()
+        }
+
+        private fun writeString(s: String) {
+            val bytes = s.toByteArray(Charsets.UTF_8)
+            writeVarint(bytes.size.toLong())
+            ensureCapacity(bytes.size)
+            System.arraycopy(bytes, 0, buffer, position, bytes.size)
+            position += bytes.size
+        }
+
+        private fun writeVarint(value: Long) {
+            ensureCapacity(10)
+            var v = value
+            while (v and 0x7fL.inv() != 0L) {
+                buffer[position++] = (v and 0x7f or 0x80).toByte()
+                v = v ushr 7
+            }
+            buffer[position++] = v.toByte()
+        }
+
+        private fun ensureCapacity(len: Int) {
+            if (position + len > buffer.size) {
+                buffer = Arrays.copyOf(buffer, Math.max(position + len, buffer.size shl 1))
+            }
+        }
+
+        private fun writeBuffer() {
+            out.write(buffer, 0, position)
+            position = 0
+        }
+    }
+
+    private class CountingOutputStream(out: OutputStream, var count: Long) : FilterOutputStream(out) {
+
+        override fun write(b: Int) {
+            out.write(b)
+            ++count
+        }
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            out.write(b, off, len)
+            count += len
+        }
     }
 
 }
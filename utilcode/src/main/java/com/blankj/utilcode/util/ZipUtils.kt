@@ -1,8 +1,24 @@
 package com.blankj.utilcode.util
 
+import android.support.annotation.IntRange
 import java.io.*
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.channels.ReadableByteChannel
 import java.util.*
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.regex.Pattern
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
 import java.util.zip.ZipEntry
+import java.util.zip.ZipException
 import java.util.zip.ZipFile
 import java.util.zip.ZipOutputStream
 
@@ -16,9 +32,60 @@ import java.util.zip.ZipOutputStream
  */
 object ZipUtils {
 
+    interface EntryFilter {
+        /**
+         * @param entry 压缩文件中的条目
+         * @return `true`: 解压该条目<br></br>`false`: 跳过
+         */
+        fun accept(entry: ZipEntry): Boolean
+    }
+
+    interface OnProgressListener {
+        /**
+         * 解压进度回调，并行解压时在工作线程中回调
+         *
+         * @param current 已解压的字节数
+         * @param total   总字节数
+         */
+        fun onProgress(current: Long, total: Long)
+    }
 
     private const val BUFFER_LEN = 8192
 
+    /**
+     * 不超过该大小的文件在工作线程中压缩到内存，更大的文件由写入线程流式压缩
+     */
+    private const val MAX_BUFFERED_ENTRY = 4 shl 20
+
+    /**
+     * 已压缩过的格式，直接存储（STORED）
+     */
+    private val STORED_EXTENSIONS = HashSet(Arrays.asList(
+            "jpg", "jpeg", "png", "gif", "webp", "mp3", "mp4", "m4a", "aac", "ogg",
+            "zip", "gz", "apk", "jar", "7z", "rar", "xz", "bz2"
+    ))
+
+    /**
+     * 缓存中央目录索引的压缩文件个数
+     */
+    private const val MAX_CACHED_INDEXES = 8
+
+    private val INDEX_CACHE = object : LinkedHashMap<String, ZipIndex>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, ZipIndex>?): Boolean {
+            return size > MAX_CACHED_INDEXES
+        }
+    }
+
+    private val THREAD_FACTORY = object : ThreadFactory {
+        private val count = AtomicInteger()
+
+        override fun newThread(r: Runnable): Thread {
+            val thread = Thread(r, "ZipUtils-" + count.incrementAndGet())
+            thread.isDaemon = true
+            return thread
+        }
+    }
+
     /**
      * 批量压缩文件
      *
@@ -92,6 +159,184 @@ object ZipUtils {
         }
     }
 
+    /**
+     * 批量并行压缩文件
+     *
+     * 各文件在工作线程中并行压缩，再按顺序写入压缩文件
+     * <br></br>jpg、png、zip 等已压缩格式直接存储，压缩后反而变大的文件也直接存储
+     * <br></br>不支持 ZIP64，单个文件及压缩文件均不能超过 4GB
+     *
+     * @param resFiles    待压缩文件集合
+     * @param zipFile     压缩文件
+     * @param comment     压缩文件的注释
+     * @param level       压缩级别，[Deflater.DEFAULT_COMPRESSION] 或 0~9，0 表示全部直接存储
+     * @param parallelism 并行线程数，1 表示在调用线程中压缩
+     * @return `true`: 压缩成功<br></br>`false`: 压缩失败
+     * @throws IOException IO 错误时抛出
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun zipFiles(resFiles: Collection<File>?,
+                 zipFile: File?,
+                 comment: String?,
+                 @IntRange(from = -1, to = 9) level: Int,
+                 @IntRange(from = 1) parallelism: Int = Runtime.getRuntime().availableProcessors()): Boolean {
+        if (resFiles == null || zipFile == null) return false
+        val sources = ArrayList<Source>()
+        for (resFile in resFiles) {
+            if (!resFile.exists()) return false
+            collectSources(resFile, "", sources)
+        }
+        val writer = ZipWriter(zipFile)
+        try {
+            writeSources(writer, sources, comment, level, parallelism)
+            writer.finish()
+            return true
+        } finally {
+            CloseUtils.closeIO(writer)
+        }
+    }
+
+    /**
+     * 增量更新压缩文件
+     *
+     * 大小和修改时间均未变的文件直接保留原条目；修改时间变了但 CRC 相同的文件也保留
+     * <br></br>保留的条目按原始字节复制，不解压也不重新压缩；压缩文件中其他条目同样保留
+     * <br></br>先写入临时文件，完成后替换原文件，中途失败或进程被杀时原压缩文件保持完整
+     * <br></br>压缩文件不存在时与 [zipFiles] 相同
+     *
+     * @param resFiles    待压缩文件集合
+     * @param zipFile     压缩文件
+     * @param comment     新增或替换条目的注释
+     * @param level       压缩级别，[Deflater.DEFAULT_COMPRESSION] 或 0~9
+     * @param parallelism 并行线程数，1 表示在调用线程中压缩
+     * @return `true`: 更新成功<br></br>`false`: 更新失败
+     * @throws IOException IO 错误或格式不支持时抛出
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun updateZip(resFiles: Collection<File>?,
+                  zipFile: File?,
+                  comment: String? = null,
+                  @IntRange(from = -1, to = 9) level: Int = Deflater.DEFAULT_COMPRESSION,
+                  @IntRange(from = 1) parallelism: Int = Runtime.getRuntime().availableProcessors()): Boolean {
+        if (resFiles == null || zipFile == null) return false
+        if (!zipFile.exists()) return zipFiles(resFiles, zipFile, comment, level, parallelism)
+        val sources = ArrayList<Source>()
+        for (resFile in resFiles) {
+            if (!resFile.exists()) return false
+            collectSources(resFile, "", sources)
+        }
+        val index = getIndex(zipFile)
+        val changed = ArrayList<Source>()
+        val replaced = HashSet<String>()
+        val calendar = Calendar.getInstance()
+        for (source in sources) {
+            val entry = index.entries[source.name]
+            if (entry == null) {
+                changed.add(source)
+            } else if (!isUnchanged(source, entry, calendar)) {
+                changed.add(source)
+                replaced.add(source.name)
+            }
+        }
+        if (changed.isEmpty()) return true
+        val tmp = File(zipFile.path + ".tmp")
+        var writer: ZipWriter? = null
+        var src: RandomAccessFile? = null
+        var success = false
+        try {
+            writer = ZipWriter(tmp)
+            src = RandomAccessFile(zipFile, "r")
+            // 按原文件中的顺序复制，每个条目的范围到下一个条目开头为止，包括数据描述符
+            val kept = ArrayList(index.list)
+            Collections.sort(kept) { a, b -> java.lang.Long.compare(a.headerOffset, b.headerOffset) }
+            for (i in kept.indices) {
+                val entry = kept[i]
+                if (replaced.contains(entry.name)) continue
+                val end = if (i + 1 < kept.size) kept[i + 1].headerOffset else index.cdOffset
+                writer.copy(src.channel, entry, end - entry.headerOffset)
+            }
+            writeSources(writer, changed, comment, level, parallelism)
+            writer.finish()
+            success = true
+        } finally {
+            CloseUtils.closeIO(writer, src)
+            if (!success) tmp.delete()
+        }
+        if (!tmp.renameTo(zipFile) && !(zipFile.delete() && tmp.renameTo(zipFile))) {
+            tmp.delete()
+            throw IOException("rename " + tmp + " failed")
+        }
+        synchronized(INDEX_CACHE) { INDEX_CACHE.remove(zipFile.absolutePath) }
+        return true
+    }
+
+    /**
+     * 大小、修改时间（精度 2 秒）均相同，或大小相同且 CRC 相同
+     */
+    @Throws(IOException::class)
+    private fun isUnchanged(source: Source, entry: IndexEntry, calendar: Calendar): Boolean {
+        if (source.name.endsWith("/")) return true
+        val file = source.file
+        if (file.length() != entry.size) return false
+        if (toDosTime(file.lastModified(), calendar) == entry.dosTime) return true
+        val crc = CRC32()
+        val buffer = ByteArray(BUFFER_LEN * 8)
+        var input: InputStream? = null
+        try {
+            input = FileInputStream(file)
+            while (true) {
+                val len = input.read(buffer)
+                if (len == -1) break
+                crc.update(buffer, 0, len)
+            }
+        } finally {
+            CloseUtils.closeIO(input)
+        }
+        return crc.value == entry.crc
+    }
+
+    /**
+     * 并行压缩并按顺序写入
+     */
+    @Throws(IOException::class)
+    private fun writeSources(writer: ZipWriter,
+                             sources: List<Source>,
+                             comment: String?,
+                             level: Int,
+                             parallelism: Int) {
+        if (parallelism <= 1) {
+            for (source in sources) writer.write(compress(source, level, comment))
+            return
+        }
+        val executor = ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                LinkedBlockingQueue<Runnable>(), THREAD_FACTORY)
+        try {
+            // 最多同时压缩 parallelism * 2 个文件，限制内存占用
+            val window = ArrayDeque<Future<Compressed>>()
+            for (source in sources) {
+                if (window.size >= parallelism * 2) writer.write(getResult(window.poll()))
+                window.add(executor.submit(Callable { compress(source, level, comment) }))
+            }
+            while (!window.isEmpty()) writer.write(getResult(window.poll()))
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    /**
+     * 转为 ZIP 使用的 DOS 时间，高 16 位为日期，低 16 位为时间
+     */
+    private fun toDosTime(time: Long, calendar: Calendar): Long {
+        calendar.timeInMillis = time
+        val year = calendar.get(Calendar.YEAR)
+        if (year < 1980) return (1 shl 21 or (1 shl 16)).toLong()
+        return ((year - 1980 shl 25) or (calendar.get(Calendar.MONTH) + 1 shl 21)
+                or (calendar.get(Calendar.DAY_OF_MONTH) shl 16) or (calendar.get(Calendar.HOUR_OF_DAY) shl 11)
+                or (calendar.get(Calendar.MINUTE) shl 5) or (calendar.get(Calendar.SECOND) shr 1)).toLong()
+    }
+
     /**
      * 压缩文件
      *
@@ -199,6 +444,105 @@ object ZipUtils {
         return true
     }
 
+    /**
+     * 与 [zipFile] 相同的顺序展开目录
+     */
+    private fun collectSources(resFile: File, rootPath: String, sources: MutableList<Source>) {
+        val name = rootPath + (if (isSpace(rootPath)) "" else "/") + resFile.name
+        if (resFile.isDirectory) {
+            val fileList = resFile.listFiles()
+            if (fileList == null || fileList.isEmpty()) {
+                sources.add(Source(resFile, name + '/'))
+            } else {
+                for (file in fileList) collectSources(file, name, sources)
+            }
+        } else {
+            sources.add(Source(resFile, name))
+        }
+    }
+
+    @Throws(IOException::class)
+    private fun <T> getResult(future: Future<T>): T {
+        try {
+            return future.get()
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw InterruptedIOException()
+        } catch (e: ExecutionException) {
+            val cause = e.cause
+            if (cause is IOException) throw cause
+            throw IOException(cause)
+        }
+    }
+
+    /**
+     * 读取并压缩文件，大文件只返回条目信息，由 [ZipWriter] 流式写入
+     */
+    @Throws(IOException::class)
+    private fun compress(source: Source, level: Int, comment: String?): Compressed {
+        val file = source.file
+        val entry = ZipEntry(source.name)
+        entry.comment = comment
+        entry.time = file.lastModified()
+        if (source.name.endsWith("/")) {
+            entry.method = ZipEntry.STORED
+            entry.crc = 0
+            entry.size = 0
+            entry.compressedSize = 0
+            return Compressed(source, entry, null, 0)
+        }
+        val length = file.length()
+        if (length > 0xFFFFFFFFL) throw IOException("zip64 is not supported: " + file)
+        entry.method = if (level == Deflater.NO_COMPRESSION || isStoredType(source.name)) ZipEntry.STORED else ZipEntry.DEFLATED
+        if (length > MAX_BUFFERED_ENTRY) return Compressed(source, entry, null, level)
+        val data = ByteArray(length.toInt())
+        var input: InputStream? = null
+        try {
+            input = FileInputStream(file)
+            var read = 0
+            while (read < data.size) {
+                val len = input.read(data, read, data.size - read)
+                if (len == -1) throw EOFException(file.toString())
+                read += len
+            }
+        } finally {
+            CloseUtils.closeIO(input)
+        }
+        val crc = CRC32()
+        crc.update(data)
+        entry.crc = crc.value
+        entry.size = data.size.toLong()
+        if (entry.method == ZipEntry.STORED) {
+            entry.compressedSize = entry.size
+            return Compressed(source, entry, data, level)
+        }
+        val deflater = Deflater(level, true)
+        try {
+            deflater.setInput(data)
+            deflater.finish()
+            // 压缩后比原文件大时改为直接存储
+            val out = ByteArray(data.size)
+            var len = 0
+            while (!deflater.finished() && len < out.size) {
+                len += deflater.deflate(out, len, out.size - len)
+            }
+            if (!deflater.finished()) {
+                entry.method = ZipEntry.STORED
+                entry.compressedSize = entry.size
+                return Compressed(source, entry, data, level)
+            }
+            entry.compressedSize = len.toLong()
+            return Compressed(source, entry, out, level)
+        } finally {
+            deflater.end()
+        }
+    }
+
+    private fun isStoredType(name: String): Boolean {
+        val dot = name.lastIndexOf('.')
+        return dot != -1 && STORED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.US))
+    }
+
     /**
      * 解压文件
      *
@@ -278,6 +622,136 @@ object ZipUtils {
         return files
     }
 
+    /**
+     * 并行解压文件
+     *
+     * 条目按大小从大到小分配给工作线程，每个线程使用独立的 [ZipFile]，并按条目大小预先分配文件
+     * <br></br>任一线程出错时其他线程随即停止，未写完的文件会被删除，已完整解压的文件保留在目标目录中
+     *
+     * @param zipFile     待解压文件
+     * @param destDir     目标目录
+     * @param filter      条目过滤器，`null` 表示解压全部，可使用 [globFilter]
+     * @param parallelism 并行线程数，1 表示在调用线程中解压
+     * @param listener    进度监听器
+     * @return 文件链表，与条目顺序一致
+     * @throws IOException IO 错误或条目路径超出目标目录时抛出
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun unzipFile(zipFile: File?,
+                  destDir: File?,
+                  filter: EntryFilter?,
+                  @IntRange(from = 1) parallelism: Int = Runtime.getRuntime().availableProcessors(),
+                  listener: OnProgressListener? = null): List<File>? {
+        if (zipFile == null || destDir == null) return null
+        val destPath = destDir.canonicalPath + File.separator
+        val entries = ArrayList<ZipEntry>()
+        val files = ArrayList<File>()
+        var total = 0L
+        val zf = ZipFile(zipFile)
+        try {
+            val e = zf.entries()
+            while (e.hasMoreElements()) {
+                val entry = e.nextElement() as ZipEntry
+                if (filter != null && !filter.accept(entry)) continue
+                val file = File(destDir, entry.name)
+                // 防止 ../ 等路径写到目标目录之外
+                if (!(file.canonicalPath + File.separator).startsWith(destPath)) {
+                    throw IOException("entry is outside of the target dir: " + entry.name)
+                }
+                entries.add(entry)
+                files.add(file)
+                if (entry.size > 0) total += entry.size
+            }
+            val tasks = ArrayList<Int>(entries.size)
+            for (i in entries.indices) tasks.add(i)
+            Collections.sort(tasks) { a, b -> java.lang.Long.compare(entries[b].size, entries[a].size) }
+            val extractor = Extractor(zipFile, entries, files, tasks, total, listener)
+            val threads = Math.min(parallelism, entries.size)
+            if (threads <= 1) {
+                extractor.run(zf)
+                return files
+            }
+            val executor = ThreadPoolExecutor(threads - 1, threads - 1, 0L, TimeUnit.MILLISECONDS,
+                    LinkedBlockingQueue<Runnable>(), THREAD_FACTORY)
+            try {
+                val futures = ArrayList<Future<*>>()
+                for (i in 1 until threads) {
+                    futures.add(executor.submit(Callable {
+                        val own = ZipFile(zipFile)
+                        try {
+                            extractor.run(own)
+                        } finally {
+                            CloseUtils.closeIO(own)
+                        }
+                    }))
+                }
+                var failure: Throwable? = null
+                try {
+                    extractor.run(zf)
+                } catch (e: Throwable) {
+                    failure = e
+                }
+                // 等所有工作线程结束，后续的异常附加到第一个异常上，不覆盖它
+                for (future in futures) {
+                    val error = try {
+                        future.get()
+                        null
+                    } catch (e: ExecutionException) {
+                        e.cause ?: e
+                    } catch (e: InterruptedException) {
+                        Thread.currentThread().interrupt()
+                        extractor.cancel()
+                        InterruptedIOException()
+                    }
+                    if (error != null) {
+                        if (failure == null) failure = error else failure.addSuppressed(error)
+                    }
+                }
+                if (failure != null) throw failure
+            } finally {
+                executor.shutdownNow()
+            }
+            return files
+        } finally {
+            CloseUtils.closeIO(zf)
+        }
+    }
+
+    /**
+     * 通配符过滤器
+     *
+     * `*` 匹配除 / 外的任意字符，`**` 匹配任意字符，`?` 匹配除 / 外的单个字符
+     * <br></br>如 `*.txt` 只匹配根目录下的 txt，`**.png` 匹配所有 png
+     *
+     * @param glob 通配符
+     * @return 条目过滤器
+     */
+    fun globFilter(glob: String): EntryFilter {
+        val regex = StringBuilder()
+        var i = 0
+        while (i < glob.length) {
+            val c = glob[i]
+            when {
+                c == '*' && i + 1 < glob.length && glob[i + 1] == '*' -> {
+                    regex.append(".*")
+                    ++i
+                }
+                c == '*' -> regex.append("[^/]*")
+                c == '?' -> regex.append("[^/]")
+                "\\.[]{}()+-^$|".indexOf(c) != -1 -> regex.append('\\').append(c)
+                else -> regex.append(c)
+            }
+            ++i
+        }
+        val pattern = Pattern.compile(regex.toString())
+        return object : EntryFilter {
+            override fun accept(entry: ZipEntry): Boolean {
+                return pattern.matcher(entry.name).matches()
+            }
+        }
+    }
+
     @Throws(IOException::class)
     private fun unzipChildFile(destDir: File,
                                files: MutableList<File>,
@@ -369,8 +843,577 @@ object ZipUtils {
         return comments
     }
 
+    /**
+     * 打开压缩文件中的条目，不解压到磁盘
+     *
+     * 中央目录索引按压缩文件缓存，文件修改后自动重建
+     * <br></br>不支持 ZIP64 及加密条目
+     *
+     * @param zipFile   压缩文件
+     * @param entryName 条目名称
+     * @return 条目输入流，条目不存在时返回 `null`
+     * @throws IOException IO 错误或格式不支持时抛出
+     */
+    @Throws(IOException::class)
+    fun getEntryInputStream(zipFile: File?, entryName: String): InputStream? {
+        if (zipFile == null) return null
+        val entry = getIndex(zipFile).entries[entryName] ?: return null
+        val input = FileInputStream(zipFile)
+        try {
+            input.channel.position(getDataOffset(input.channel, entry))
+            val bounded = BoundedInputStream(input, entry.compressedSize)
+            return when (entry.method) {
+                ZipEntry.STORED -> bounded
+                ZipEntry.DEFLATED -> EntryInflaterInputStream(bounded)
+                else -> throw IOException("unsupported compression method: " + entry.method)
+            }
+        } catch (e: IOException) {
+            CloseUtils.closeIO(input)
+            throw e
+        }
+    }
+
+    /**
+     * 以通道方式打开压缩文件中的条目，不解压到磁盘
+     *
+     * @param zipFile   压缩文件
+     * @param entryName 条目名称
+     * @return 条目通道，条目不存在时返回 `null`
+     * @throws IOException IO 错误或格式不支持时抛出
+     */
+    @Throws(IOException::class)
+    fun getEntryChannel(zipFile: File?, entryName: String): ReadableByteChannel? {
+        val input = getEntryInputStream(zipFile, entryName) ?: return null
+        return Channels.newChannel(input)
+    }
+
+    /**
+     * 将压缩文件中直接存储（STORED）的条目的某段映射到内存
+     *
+     * 直接映射压缩文件中的数据，不经过解压和复制
+     *
+     * @param zipFile   压缩文件
+     * @param entryName 条目名称
+     * @param offset    条目内的起始偏移
+     * @param length    映射长度，-1 表示到条目末尾
+     * @return 只读的内存映射，条目不存在或不是直接存储时返回 `null`
+     * @throws IOException IO 错误、格式不支持或范围越界时抛出
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun mapStoredEntry(zipFile: File?,
+                       entryName: String,
+                       offset: Long = 0,
+                       length: Long = -1): MappedByteBuffer? {
+        if (zipFile == null) return null
+        val entry = getIndex(zipFile).entries[entryName] ?: return null
+        if (entry.method != ZipEntry.STORED) return null
+        val len = if (length == -1L) entry.size - offset else length
+        if (offset < 0 || len < 0 || offset + len > entry.size) {
+            throw IOException("range out of entry: " + offset + "+" + len + " > " + entry.size)
+        }
+        var raf: RandomAccessFile? = null
+        try {
+            raf = RandomAccessFile(zipFile, "r")
+            val channel = raf.channel
+            return channel.map(FileChannel.MapMode.READ_ONLY, getDataOffset(channel, entry) + offset, len)
+        } finally {
+            CloseUtils.closeIO(raf)
+        }
+    }
+
+    /**
+     * 获取中央目录索引，文件大小或修改时间变化时重新读取
+     */
+    @Throws(IOException::class)
+    private fun getIndex(zipFile: File): ZipIndex {
+        val key = zipFile.absolutePath
+        var index = synchronized(INDEX_CACHE) { INDEX_CACHE[key] }
+        if (index != null && index.length == zipFile.length() && index.lastModified == zipFile.lastModified()) {
+            return index
+        }
+        index = ZipIndex.read(zipFile)
+        synchronized(INDEX_CACHE) { INDEX_CACHE.put(key, index) }
+        return index
+    }
+
+    /**
+     * 数据偏移需跳过本地文件头，其中的扩展字段长度可能与中央目录不同
+     */
+    @Throws(IOException::class)
+    private fun getDataOffset(channel: FileChannel, entry: IndexEntry): Long {
+        if (entry.dataOffset != -1L) return entry.dataOffset
+        val header = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN)
+        while (header.hasRemaining()) {
+            if (channel.read(header, entry.headerOffset + header.position()) == -1) throw EOFException()
+        }
+        if (header.getInt(0) != ZipIndex.LOCAL_SIG) throw ZipException("invalid local header: " + entry.name)
+        if (header.getShort(6).toInt() and 1 != 0) throw ZipException("encrypted entry is not supported: " + entry.name)
+        val dataOffset = entry.headerOffset + 30 + (header.getShort(26).toInt() and 0xFFFF) + (header.getShort(28).toInt() and 0xFFFF)
+        entry.dataOffset = dataOffset
+        return dataOffset
+    }
+
+    private class Source(val file: File, val name: String)
+
+    private class IndexEntry(val name: String,
+                             val method: Int,
+                             val crc: Long,
+                             val dosTime: Long,
+                             val compressedSize: Long,
+                             val size: Long,
+                             val headerOffset: Long,
+                             val central: ByteArray) {
+        @Volatile
+        var dataOffset = -1L
+    }
+
+    /**
+     * 压缩文件的中央目录索引
+     */
+    private class ZipIndex(val length: Long,
+                           val lastModified: Long,
+                           val cdOffset: Long,
+                           val list: List<IndexEntry>,
+                           val entries: Map<String, IndexEntry>) {
+
+        companion object {
+            const val LOCAL_SIG = 0x04034b50
+            private const val CENTRAL_SIG = 0x02014b50
+            private const val END_SIG = 0x06054b50
+            private const val END_LEN = 22
+
+            @Throws(IOException::class)
+            fun read(zipFile: File): ZipIndex {
+                var raf: RandomAccessFile? = null
+                try {
+                    raf = RandomAccessFile(zipFile, "r")
+                    val length = raf.length()
+                    val lastModified = zipFile.lastModified()
+                    // 目录结束记录在文件末尾，其后最多有 65535 字节的注释
+                    val tailLen = Math.min(length, (END_LEN + 0xFFFF).toLong()).toInt()
+                    val tail = ByteArray(tailLen)
+                    raf.seek(length - tailLen)
+                    raf.readFully(tail)
+                    val tailBuffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN)
+                    var end = tailLen - END_LEN
+                    while (end >= 0 && tailBuffer.getInt(end) != END_SIG) --end
+                    if (end < 0) throw ZipException("not a zip file: " + zipFile)
+                    val count = tailBuffer.getShort(end + 10).toInt() and 0xFFFF
+                    val cdSize = tailBuffer.getInt(end + 12).toLong() and 0xFFFFFFFFL
+                    val cdOffset = tailBuffer.getInt(end + 16).toLong() and 0xFFFFFFFFL
+                    if (count == 0xFFFF || cdOffset == 0xFFFFFFFFL) throw ZipException("zip64 is not supported: " + zipFile)
+                    if (cdOffset + cdSize > length) throw ZipException("invalid central directory: " + zipFile)
+                    val cd = ByteArray(cdSize.toInt())
+                    raf.seek(cdOffset)
+                    raf.readFully(cd)
+                    val buffer = ByteBuffer.wrap(cd).order(ByteOrder.LITTLE_ENDIAN)
+                    val list = ArrayList<IndexEntry>(count)
+                    val entries = HashMap<String, IndexEntry>(count * 4 / 3 + 1)
+                    var pos = 0
+                    for (i in 0 until count) {
+                        if (pos + 46 > cd.size || buffer.getInt(pos) != CENTRAL_SIG) {
+                            throw ZipException("invalid central directory: " + zipFile)
+                        }
+                        val nameLen = buffer.getShort(pos + 28).toInt() and 0xFFFF
+                        val extraLen = buffer.getShort(pos + 30).toInt() and 0xFFFF
+                        val commentLen = buffer.getShort(pos + 32).toInt() and 0xFFFF
+                        val recordLen = 46 + nameLen + extraLen + commentLen
+                        if (pos + recordLen > cd.size) throw ZipException("invalid central directory: " + zipFile)
+                        val compressedSize = buffer.getInt(pos + 20).toLong() and 0xFFFFFFFFL
+                        val size = buffer.getInt(pos + 24).toLong() and 0xFFFFFFFFL
+                        val headerOffset = buffer.getInt(pos + 42).toLong() and 0xFFFFFFFFL
+                        if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || headerOffset == 0xFFFFFFFFL) {
+                            throw ZipException("zip64 is not supported: " + zipFile)
+                        }
+                        val name = String(cd, pos + 46, nameLen, Charsets.UTF_8)
+                        val entry = IndexEntry(name,
+                                buffer.getShort(pos + 10).toInt() and 0xFFFF,
+                                buffer.getInt(pos + 16).toLong() and 0xFFFFFFFFL,
+                                buffer.getInt(pos + 12).toLong() and 0xFFFFFFFFL,
+                                compressedSize, size, headerOffset,
+                                Arrays.copyOfRange(cd, pos, pos + recordLen))
+                        list.add(entry)
+                        entries.put(name, entry)
+                        pos += recordLen
+                    }
+                    return ZipIndex(length, lastModified, cdOffset, list, entries)
+                } finally {
+                    CloseUtils.closeIO(raf)
+                }
+            }
+        }
+    }
+
+    /**
+     * 只读取条目数据范围内的字节
+     */
+    private class BoundedInputStream(input: InputStream, private var remaining: Long) : FilterInputStream(input) {
+
+        override fun read(): Int {
+            if (remaining <= 0) return -1
+            val b = super.read()
+            if (b != -1) --remaining
+            return b
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (remaining <= 0) return -1
+            val n = super.read(b, off, Math.min(len.toLong(), remaining).toInt())
+            if (n > 0) remaining -= n.toLong()
+            return n
+        }
+
+        override fun skip(n: Long): Long {
+            val skipped = super.skip(Math.min(n, remaining))
+            if (skipped > 0) remaining -= skipped
+            return skipped
+        }
+
+        override fun available(): Int {
+            return Math.min(super.available().toLong(), remaining).toInt()
+        }
+
+        override fun markSupported(): Boolean {
+            return false
+        }
+    }
+
+    /**
+     * 关闭时释放 [Inflater]，数据读完时补一个空字节，与 [ZipFile] 的处理一致
+     */
+    private class EntryInflaterInputStream(input: InputStream)
+        : InflaterInputStream(input, Inflater(true), BUFFER_LEN) {
+        private var isEof = false
+        private var isClosed = false
+
+        override fun fill() {
+            if (isEof) throw EOFException("unexpected end of zip entry")
+            len = `in`.read(buf, 0, buf.size)
+            if (len == -1) {
+                buf[0] = 0
+                len = 1
+                isEof = true
+            }
+            inf.setInput(buf, 0, len)
+        }
+
+        override fun close() {
+            if (isClosed) return
+            isClosed = true
+            inf.end()
+            super.close()
+        }
+    }
+
+    /**
+     * 各线程从共享的下标领取条目，出错时其他线程随即停止
+     */
+    private class Extractor(private val zipFile: File,
+                            private val entries: List<ZipEntry>,
+                            private val files: List<File>,
+                            private val tasks: List<Int>,
+                            private val total: Long,
+                            private val listener: OnProgressListener?) {
+        private val next = AtomicInteger()
+        private val current = AtomicLong()
+        @Volatile
+        private var isCancelled = false
+
+        fun cancel() {
+            isCancelled = true
+        }
+
+        @Throws(IOException::class)
+        fun run(zf: ZipFile) {
+            val buffer = ByteArray(BUFFER_LEN * 8)
+            try {
+                while (!isCancelled) {
+                    val i = next.getAndIncrement()
+                    if (i >= tasks.size) return
+                    val index = tasks[i]
+                    extract(zf, entries[index], files[index], buffer)
+                }
+            } catch (e: Throwable) {
+                // 任一线程出错都让其他线程停止
+                cancel()
+                throw e
+            }
+        }
+
+        @Throws(IOException::class)
+        private fun extract(zf: ZipFile, entry: ZipEntry, file: File, buffer: ByteArray) {
+            if (entry.isDirectory) {
+                if (!createOrExistsDir(file)) throw IOException("create dir failed: " + file)
+                return
+            }
+            if (!createOrExistsDir(file.parentFile)) throw IOException("create dir failed: " + file.parentFile)
+            var input: InputStream? = null
+            var out: RandomAccessFile? = null
+            var complete = false
+            try {
+                input = zf.getEntry(entry.name)?.let { zf.getInputStream(it) }
+                        ?: throw IOException("entry not found in " + zipFile + ": " + entry.name)
+                out = RandomAccessFile(file, "rw")
+                // 预先分配空间，减少文件系统碎片和扩容开销
+                if (entry.size >= 0) out.setLength(entry.size)
+                var written = 0L
+                while (true) {
+                    if (isCancelled) return
+                    val len = input.read(buffer)
+                    if (len == -1) break
+                    out.write(buffer, 0, len)
+                    written += len
+                    if (listener != null) listener.onProgress(current.addAndGet(len.toLong()), total)
+                }
+                if (written != out.length()) out.setLength(written)
+                complete = true
+            } finally {
+                CloseUtils.closeIO(input, out)
+                // 出错或被取消时删除未写完的文件
+                if (!complete) file.delete()
+            }
+        }
+    }
+
+    /**
+     * 压缩结果，data 为 `null` 且不是目录时由写入线程流式压缩
+     */
+    private class Compressed(val source: Source, val entry: ZipEntry, val data: ByteArray?, val level: Int)
+
+    /**
+     * 按 ZIP 格式直接写入已压缩的条目，写完后补写中央目录
+     *
+     * 流式写入的条目写完数据后回写本地文件头中的 CRC 及大小，因此不需要数据描述符
+     */
+    private class ZipWriter(file: File) : Closeable {
+        private val raf = RandomAccessFile(file, "rw")
+        private val channel = raf.channel
+        private val out = BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_LEN * 8)
+        private val entries = ArrayList<Written>()
+        private val calendar = Calendar.getInstance()
+        private var position = 0L
+
+        init {
+            try {
+                raf.setLength(0)
+            } catch (e: IOException) {
+                CloseUtils.closeIO(raf)
+                throw e
+            }
+        }
+
+        /**
+         * 按原始字节复制条目，包括本地文件头、数据及数据描述符
+         */
+        @Throws(IOException::class)
+        fun copy(src: FileChannel, entry: IndexEntry, length: Long) {
+            val written = Written(null, position, EMPTY, 0, entry.central)
+            if (entries.size >= 0xFFFF) throw IOException("zip64 is not supported: too many entries")
+            entries.add(written)
+            out.flush()
+            var count = 0L
+            while (count < length) {
+                val n = src.transferTo(entry.headerOffset + count, length - count, channel)
+                if (n <= 0) throw EOFException()
+                count += n
+            }
+            position += length
+            checkOffset(written)
+        }
+
+        @Throws(IOException::class)
+        fun write(compressed: Compressed) {
+            val entry = compressed.entry
+            val data = compressed.data
+            if (data != null || entry.isDirectory) {
+                val written = writeHeader(entry)
+                if (data != null) out.write(data, 0, entry.compressedSize.toInt())
+                position += entry.compressedSize
+                checkOffset(written)
+                return
+            }
+            entry.crc = 0
+            entry.size = 0
+            entry.compressedSize = 0
+            val written = writeHeader(entry)
+            writeStream(compressed.source.file, entry, compressed.level)
+            checkOffset(written)
+            out.flush()
+            // 回写 CRC、压缩后大小、原大小
+            val patch = ByteArray(12)
+            putInt(patch, 0, entry.crc)
+            putInt(patch, 4, entry.compressedSize)
+            putInt(patch, 8, entry.size)
+            channel.write(ByteBuffer.wrap(patch), written.offset + 14)
+        }
+
+        @Throws(IOException::class)
+        private fun writeStream(file: File, entry: ZipEntry, level: Int) {
+            val crc = CRC32()
+            val buffer = ByteArray(BUFFER_LEN * 8)
+            val deflated = ByteArray(BUFFER_LEN * 8)
+            val deflater = if (entry.method == ZipEntry.DEFLATED) Deflater(level, true) else null
+            var size = 0L
+            var compressedSize = 0L
+            var input: InputStream? = null
+            try {
+                input = FileInputStream(file)
+                while (true) {
+                    val len = input.read(buffer)
+                    if (len == -1) break
+                    crc.update(buffer, 0, len)
+                    size += len
+                    if (deflater == null) {
+                        out.write(buffer, 0, len)
+                        compressedSize += len
+                    } else {
+                        deflater.setInput(buffer, 0, len)
+                        while (!deflater.needsInput()) {
+                            val n = deflater.deflate(deflated)
+                            out.write(deflated, 0, n)
+                            compressedSize += n
+                        }
+                    }
+                }
+                if (deflater != null) {
+                    deflater.finish()
+                    while (!deflater.finished()) {
+                        val n = deflater.deflate(deflated)
+                        out.write(deflated, 0, n)
+                        compressedSize += n
+                    }
+                }
+            } finally {
+                deflater?.end()
+                CloseUtils.closeIO(input)
+            }
+            if (size > 0xFFFFFFFFL || compressedSize > 0xFFFFFFFFL) throw IOException("zip64 is not supported: " + file)
+            entry.crc = crc.value
+            entry.size = size
+            entry.compressedSize = compressedSize
+            position += compressedSize
+        }
+
+        @Throws(IOException::class)
+        private fun writeHeader(entry: ZipEntry): Written {
+            val written = Written(entry, position, entry.name.toByteArray(Charsets.UTF_8), toDosTime(entry.time, calendar))
+            if (entries.size >= 0xFFFF) throw IOException("zip64 is not supported: too many entries")
+            entries.add(written)
+            writeInt(LOCAL_SIG)
+            writeShort(version(entry))
+            writeShort(FLAG_UTF8)
+            writeShort(entry.method)
+            writeEntryInfo(written)
+            writeShort(0)
+            out.write(written.name)
+            position += 30 + written.name.size
+            return written
+        }
+
+        private fun writeEntryInfo(written: Written) {
+            val entry = written.entry!!
+            writeInt(written.dosTime.toInt())
+            writeInt(entry.crc.toInt())
+            writeInt(entry.compressedSize.toInt())
+            writeInt(entry.size.toInt())
+            writeShort(written.name.size)
+        }
+
+        @Throws(IOException::class)
+        fun finish() {
+            val cdOffset = position
+            for (written in entries) {
+                if (written.central != null) {
+                    // 原样写入已有条目的中央目录记录，只更新偏移
+                    val central = written.central.copyOf()
+                    putInt(central, 42, written.offset)
+                    out.write(central)
+                    position += central.size
+                    continue
+                }
+                val entry = written.entry!!
+                val comment = entry.comment?.toByteArray(Charsets.UTF_8) ?: EMPTY
+                writeInt(CENTRAL_SIG)
+                writeShort(version(entry))
+                writeShort(version(entry))
+                writeShort(FLAG_UTF8)
+                writeShort(entry.method)
+                writeEntryInfo(written)
+                writeShort(0)
+                writeShort(comment.size)
+                writeShort(0)
+                writeShort(0)
+                writeInt(0)
+                writeInt(written.offset.toInt())
+                out.write(written.name)
+                out.write(comment)
+                position += 46 + written.name.size + comment.size
+            }
+            if (position > 0xFFFFFFFFL) throw IOException("zip64 is not supported: zip file is too large")
+            writeInt(END_SIG)
+            writeShort(0)
+            writeShort(0)
+            writeShort(entries.size)
+            writeShort(entries.size)
+            writeInt((position - cdOffset).toInt())
+            writeInt(cdOffset.toInt())
+            writeShort(0)
+            out.flush()
+            // 替换原文件前先落盘，避免掉电后得到不完整的压缩文件
+            channel.force(false)
+        }
+
+        override fun close() {
+            CloseUtils.closeIO(out, raf)
+        }
+
+        private fun checkOffset(written: Written) {
+            if (written.offset > 0xFFFFFFFFL) throw IOException("zip64 is not supported: zip file is too large")
+        }
+
+        /**
+         * ZIP 中的整数均为小端序
+         */
+        private fun writeShort(v: Int) {
+            out.write(v and 0xFF)
+            out.write(v.ushr(8) and 0xFF)
+        }
+
+        private fun writeInt(v: Int) {
+            writeShort(v and 0xFFFF)
+            writeShort(v.ushr(16))
+        }
+
+        private fun putInt(b: ByteArray, off: Int, v: Long) {
+            for (i in 0..3) b[off + i] = (v shr (i * 8)).toByte()
+        }
+
+        private fun version(entry: ZipEntry): Int {
+            return if (entry.method == ZipEntry.DEFLATED) 20 else 10
+        }
+
+        /**
+         * central 不为 `null` 时表示已有条目，为其原始的中央目录记录
+         */
+        private class Written(val entry: ZipEntry?,
+                              val offset: Long,
+                              val name: ByteArray,
+                              val dosTime: Long,
+                              val central: ByteArray? = null)
+
+        companion object {
+            private const val LOCAL_SIG = 0x04034b50
+            private const val CENTRAL_SIG = 0x02014b50
+            private const val END_SIG = 0x06054b50
+            private const val FLAG_UTF8 = 0x800
+            private val EMPTY = ByteArray(0)
+        }
+    }
+
     private fun createOrExistsDir(file: File?): Boolean {
-        return file != null && if (file.exists()) file.isDirectory else file.mkdirs()
+        // 并行解压时其他线程可能同时创建了该目录
+        return file != null && (file.isDirectory || file.mkdirs() || file.isDirectory)
     }
 
     private fun createOrExistsFile(file: File?): Boolean {
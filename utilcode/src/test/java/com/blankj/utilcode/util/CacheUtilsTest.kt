@@ -194,9 +194,9 @@ class CacheUtilsTest {
     @Test
     @Throws(Exception::class)
     fun getCacheSize() {
-        assertEquals(FileUtils.getDirLength(cache1File), mCacheUtils1!!.cacheSize)
+        assertEquals(getCachedFilesLength(cache1File), mCacheUtils1!!.cacheSize)
 
-        assertEquals(FileUtils.getDirLength(cache2File), mCacheUtils2!!.cacheSize)
+        assertEquals(getCachedFilesLength(cache2File), mCacheUtils2!!.cacheSize)
     }
 
     @Test
@@ -260,6 +260,155 @@ class CacheUtilsTest {
         assertNull(mCacheUtils2!!.getSerializable("serializable2"))
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun removeLeastRecentlyUsed() {
+        val cacheUtils = CacheUtils.getInstance(File(PATH_CACHE + "lru" + FILE_SEP), java.lang.Long.MAX_VALUE, 2)
+        cacheUtils.put("lru1", mString)
+        cacheUtils.put("lru2", mString)
+        assertNotNull(cacheUtils.getString("lru1"))
+        cacheUtils.put("lru3", mString)
+        assertEquals(2, cacheUtils.cacheCount.toLong())
+        assertNotNull(cacheUtils.getString("lru1"))
+        assertNull(cacheUtils.getString("lru2"))
+        assertNotNull(cacheUtils.getString("lru3"))
+        cacheUtils.clear()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun memoryCache() {
+        val cacheUtils = CacheUtils.getInstance(File(PATH_CACHE + "memory" + FILE_SEP))
+        cacheUtils.setMemoryCacheSize(1024)
+        cacheUtils.put("memory", mString)
+        assertEquals(mString, cacheUtils.getString("memory"))
+        assertEquals(mString, cacheUtils.getString("memory"))
+        assertEquals(1, cacheUtils.memoryMissCount)
+        assertEquals(1, cacheUtils.memoryHitCount)
+
+        cacheUtils.put("memory", "MemoryCache")
+        assertEquals("MemoryCache", cacheUtils.getString("memory"))
+        cacheUtils.remove("memory")
+        assertNull(cacheUtils.getString("memory"))
+        assertEquals(1, cacheUtils.memoryHitCount)
+
+        cacheUtils.setMemoryCacheSize(0)
+        cacheUtils.clear()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun stream() {
+        val os = mCacheUtils1!!.openOutputStream("stream1", 60 * CacheUtils.SEC)
+        assertNotNull(os)
+        os!!.write(mBytes)
+        os.close()
+        val `is` = mCacheUtils1!!.openInputStream("stream1")
+        assertNotNull(`is`)
+        assertEquals(mString, String(ConvertUtils.inputStream2Bytes(`is`)!!))
+        assertEquals(mString, mCacheUtils1!!.getString("stream1"))
+        assertNull(mCacheUtils1!!.openInputStream("stream2"))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun hashCodeCollision() {
+        assertEquals("Aa".hashCode().toLong(), "BB".hashCode().toLong())
+        mCacheUtils1!!.put("Aa", "Aa")
+        mCacheUtils1!!.put("BB", "BB")
+        assertEquals("Aa", mCacheUtils1!!.getString("Aa"))
+        assertEquals("BB", mCacheUtils1!!.getString("BB"))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun readLegacyFormat() {
+        val legacyDir = File(PATH_CACHE + "legacy" + FILE_SEP)
+        val cacheUtils = CacheUtils.getInstance(legacyDir)
+        val dueTime = String.format(Locale.getDefault(), "_$%010d$" + "_", System.currentTimeMillis() / 1000 + 60)
+        val expired = String.format(Locale.getDefault(), "_$%010d$" + "_", System.currentTimeMillis() / 1000 - 60)
+        FileIOUtils.writeFileFromString(File(legacyDir, "legacy1".hashCode().toString()), dueTime + mString)
+        FileIOUtils.writeFileFromString(File(legacyDir, "legacy2".hashCode().toString()), mString)
+        FileIOUtils.writeFileFromString(File(legacyDir, "legacy3".hashCode().toString()), expired + mString)
+        // 不足 16 字节的旧格式文件
+        FileIOUtils.writeFileFromString(File(legacyDir, "legacy4".hashCode().toString()), dueTime + "a")
+        FileIOUtils.writeFileFromString(File(legacyDir, "legacy5".hashCode().toString()), expired + "a")
+        assertEquals(mString, cacheUtils.getString("legacy1"))
+        assertEquals(mString, cacheUtils.getString("legacy2"))
+        assertNull(cacheUtils.getString("legacy3"))
+        assertEquals("a", cacheUtils.getString("legacy4"))
+        assertNull(cacheUtils.getString("legacy5"))
+        cacheUtils.clear()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun removeWithLegacyFile() {
+        val legacyDir = File(PATH_CACHE + "legacyRemove" + FILE_SEP)
+        FileIOUtils.writeFileFromString(File(legacyDir, "legacy".hashCode().toString()), mString)
+        val cacheUtils = CacheUtils.getInstance(legacyDir)
+        assertEquals(1, cacheUtils.cacheCount.toLong())
+        cacheUtils.put("legacy", "CacheUtils2")
+        assertEquals(1, cacheUtils.cacheCount.toLong())
+        assertTrue(cacheUtils.remove("legacy"))
+        // 旧版文件不应被迁移回来
+        assertNull(cacheUtils.getString("legacy"))
+        assertEquals(0, cacheUtils.cacheCount.toLong())
+        assertEquals(0, cacheUtils.cacheSize)
+        cacheUtils.clear()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun asyncWrite() {
+        val cacheUtils = CacheUtils.getInstance(File(PATH_CACHE + "async" + FILE_SEP))
+        cacheUtils.setAsyncWrite(true, CacheUtils.SYNC_PERIODIC)
+        for (i in 0..99) {
+            cacheUtils.put("async" + i, mString + i)
+        }
+        assertEquals(mString + 99, cacheUtils.getString("async99"))
+        cacheUtils.put("async0", mString)
+        cacheUtils.remove("async1")
+        cacheUtils.flush()
+        assertEquals(99, cacheUtils.cacheCount.toLong())
+        assertEquals(mString, cacheUtils.getString("async0"))
+        assertNull(cacheUtils.getString("async1"))
+
+        // 修改写入的数组或读到的数组都不影响缓存
+        val bytes = mBytes.clone()
+        cacheUtils.put("asyncBytes", bytes)
+        bytes[0] = 0
+        cacheUtils.getBytes("asyncBytes")!![1] = 0
+        assertArrayEquals(mBytes, cacheUtils.getBytes("asyncBytes"))
+        cacheUtils.setAsyncWrite(false)
+        assertArrayEquals(mBytes, cacheUtils.getBytes("asyncBytes"))
+        cacheUtils.clear()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun reconcileJournal() {
+        val cacheDir = File(PATH_CACHE + "reconcile" + FILE_SEP)
+        val indexed = File(cacheDir, "00" + FILE_SEP + "indexed")
+        val stray = File(cacheDir, "00" + FILE_SEP + "stray")
+        assertTrue(FileIOUtils.writeFileFromString(indexed, mString))
+        // 模拟写入文件后、记录日志前进程被杀留下的游离文件，以及日志中已不存在的文件
+        assertTrue(FileIOUtils.writeFileFromString(stray, mString))
+        assertTrue(FileIOUtils.writeFileFromString(File(cacheDir, "journal"),
+                "CacheUtils.journal\n1\nPUT 00/missing 10 0\nPUT 00/indexed 10 0\n"))
+        // 日志加载成功后在索引线程中与磁盘核对
+        val cacheUtils = CacheUtils.getInstance(cacheDir)
+        assertEquals(2, cacheUtils.cacheCount.toLong())
+        assertEquals(getCachedFilesLength(cacheDir), cacheUtils.cacheSize)
+        cacheUtils.clear()
+        assertFalse(stray.exists())
+    }
+
+    private fun getCachedFilesLength(cacheDir: File): Long {
+        // 索引日志不计入缓存大小
+        return FileUtils.getDirLength(cacheDir) - File(cacheDir, "journal").length()
+    }
+
     @After
     @Throws(Exception::class)
     fun tearDown() {
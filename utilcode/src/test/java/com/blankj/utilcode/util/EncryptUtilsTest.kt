@@ -2,12 +2,19 @@ package com.blankj.utilcode.util
 
 import com.blankj.utilcode.util.TestConfig.PATH_ENCRYPT
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
 import org.junit.Assert.assertTrue
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.robolectric.RobolectricTestRunner
 import org.robolectric.annotation.Config
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 import java.io.File
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.Pipe
 import java.util.*
 
 
@@ -539,6 +546,90 @@ class EncryptUtilsTest {
         )
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun hasher() {
+        val blankjSHA256 = "8BD80AE90DFBA112786367BEBDDEE60A638EF5B82682EDF8F3D3CA8E6BFEF648"
+        val hasher = EncryptUtils.getHasher("SHA256")!!
+        hasher.update("blan".toByteArray()).update(ByteBuffer.wrap("kj".toByteArray()))
+        assertEquals(blankjSHA256, hasher.digestToString())
+        hasher.update(ByteArrayInputStream("blankj".toByteArray()))
+        assertEquals(blankjSHA256, hasher.digestToString())
+
+        val blankjHmacSHA256 = "A59675F13FC9A6E06D8DC90D4DC01DB9C991B0B95749D2471E588BF311DA2C67"
+        val hmacHasher = EncryptUtils.getHmacHasher("HmacSHA256", blankjHmackey.toByteArray())!!
+        hmacHasher.update("bl".toByteArray()).update("ankj".toByteArray())
+        assertEquals(blankjHmacSHA256, hmacHasher.digestToString())
+        assertNull(EncryptUtils.getHmacHasher("HmacSHA256", ByteArray(0)))
+
+        val fileMd5 = "7f138a09169b250e9dcb378140907378"
+        assertEquals(
+                fileMd5.toUpperCase(),
+                EncryptUtils.encryptFile2String(File(PATH_ENCRYPT + "MD5.txt"), "MD5")
+        )
+        assertEquals(
+                fileMd5.toUpperCase(),
+                EncryptUtils.getHasher("MD5")!!.update(File(PATH_ENCRYPT + "MD5.txt")).digestToString()
+        )
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun cipherStream() {
+        val data = ByteArray(200 * 1024)
+        Random(0).nextBytes(data)
+        val iv = ByteArray(16)
+        for (transformation in arrayOf("AES/CBC/PKCS5Padding", "AES/GCM/NoPadding")) {
+            val encrypted = ByteArrayOutputStream()
+            assertTrue(EncryptUtils.encryptStream(ByteArrayInputStream(data), encrypted, bytesKeyAES, transformation, iv))
+            assertTrue(
+                    Arrays.equals(
+                            data,
+                            EncryptUtils.decryptAES(encrypted.toByteArray(), bytesKeyAES!!, transformation, iv)
+                    )
+            )
+            val decrypted = ByteArrayOutputStream()
+            assertTrue(EncryptUtils.decryptStream(ByteArrayInputStream(encrypted.toByteArray()), decrypted, bytesKeyAES, transformation, iv))
+            assertTrue(Arrays.equals(data, decrypted.toByteArray()))
+        }
+
+        // 相同参数重复加密结果一致，不能因复用 Cipher 而交替失败
+        val gcmIv = ByteArray(12)
+        val first = EncryptUtils.encryptAES(data, bytesKeyAES!!, "AES/GCM/NoPadding", gcmIv)
+        assertTrue(Arrays.equals(first, EncryptUtils.encryptAES(data, bytesKeyAES, "AES/GCM/NoPadding", gcmIv)))
+        for (i in 0..1) {
+            val out = ByteArrayOutputStream()
+            assertTrue(EncryptUtils.encryptStream(ByteArrayInputStream(data), out, bytesKeyAES, "AES/GCM/NoPadding", gcmIv))
+            assertTrue(Arrays.equals(first, out.toByteArray()))
+            assertTrue(EncryptUtils.encryptStream(ByteArrayInputStream(data), ByteArrayOutputStream(), bytesKeyAES, "AES/GCM/NoPadding"))
+        }
+
+        // 不传初始化向量时每次生成新的随机初始化向量，相同明文得到不同密文；ECB 不使用初始化向量，结果一致
+        val cbc1 = ByteArrayOutputStream()
+        val cbc2 = ByteArrayOutputStream()
+        assertTrue(EncryptUtils.encryptStream(ByteArrayInputStream(data), cbc1, bytesKeyAES, "AES/CBC/PKCS5Padding"))
+        assertTrue(EncryptUtils.encryptStream(ByteArrayInputStream(data), cbc2, bytesKeyAES, "AES/CBC/PKCS5Padding"))
+        assertFalse(Arrays.equals(cbc1.toByteArray(), cbc2.toByteArray()))
+        val ecb1 = ByteArrayOutputStream()
+        val ecb2 = ByteArrayOutputStream()
+        assertTrue(EncryptUtils.encryptStream(ByteArrayInputStream(data), ecb1, bytesKeyAES, "AES/ECB/PKCS5Padding"))
+        assertTrue(EncryptUtils.encryptStream(ByteArrayInputStream(data), ecb2, bytesKeyAES, "AES/ECB/PKCS5Padding"))
+        assertTrue(Arrays.equals(ecb1.toByteArray(), ecb2.toByteArray()))
+
+        // 非阻塞通道直接返回 false
+        val pipe = Pipe.open()
+        pipe.source().configureBlocking(false)
+        assertFalse(EncryptUtils.encryptChannel(pipe.source(), Channels.newChannel(ByteArrayOutputStream()), bytesKeyAES, "AES/ECB/PKCS5Padding"))
+        pipe.source().close()
+        pipe.sink().close()
+
+        val tampered = ByteArrayOutputStream()
+        EncryptUtils.encryptStream(ByteArrayInputStream(data), tampered, bytesKeyAES, "AES/GCM/NoPadding", ByteArray(12))
+        val bytes = tampered.toByteArray()
+        bytes[0] = (bytes[0].toInt() xor 1).toByte()
+        assertFalse(EncryptUtils.decryptStream(ByteArrayInputStream(bytes), ByteArrayOutputStream(), bytesKeyAES, "AES/GCM/NoPadding", ByteArray(12)))
+    }
+
     companion object {
 
         init {
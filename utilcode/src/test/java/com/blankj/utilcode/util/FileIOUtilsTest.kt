@@ -5,7 +5,10 @@ import com.blankj.utilcode.util.TestConfig.PATH_TEMP
 import org.junit.After
 import org.junit.Assert
 import org.junit.Test
+import java.io.File
 import java.io.FileInputStream
+import java.nio.ByteBuffer
+import java.util.*
 
 /**
  * <pre>
@@ -58,6 +61,29 @@ class FileIOUtilsTest {
         //        FileUtils.deleteFile(p);
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun mappedAppender() {
+        val path = PATH_TEMP + "mapped.bin"
+        val record = ByteArray(100) { it.toByte() }
+        var appender = FileIOUtils.openMappedAppender(File(path), 256)
+        Assert.assertNotNull(appender)
+        for (i in 0..9) {
+            Assert.assertEquals((i * 100).toLong(), appender!!.append(record))
+        }
+        appender!!.force()
+        appender.close()
+        Assert.assertEquals(1000, File(path).length())
+
+        appender = FileIOUtils.openMappedAppender(path)
+        Assert.assertEquals(1000, appender!!.position)
+        appender.append(ByteBuffer.wrap(record))
+        appender.close()
+        val bytes = FileIOUtils.readFile2BytesByStream(path)
+        Assert.assertEquals(1100, bytes!!.size)
+        Assert.assertArrayEquals(record, Arrays.copyOfRange(bytes, 1000, 1100))
+    }
+
     @Test
     @Throws(Exception::class)
     fun writeFileFromString() {
@@ -67,7 +93,20 @@ class FileIOUtilsTest {
     @Test
     @Throws(Exception::class)
     fun readFile2List() {
+        val path = PATH_TEMP + "lines.txt"
+        val sb = StringBuilder()
+        for (i in 1..100) sb.append("line").append(i).append(if (i % 2 == 0) "\r\n" else "\n")
+        Assert.assertTrue(FileIOUtils.writeFileFromString(path, sb.toString()))
+        val expected = (95..100).map { "line" + it }
+        Assert.assertEquals(expected, FileIOUtils.readFile2List(path, 95, 200))
 
+        Assert.assertTrue(FileIOUtils.buildLineIndex(File(path), 10))
+        Assert.assertTrue(File(path + ".lineidx").exists())
+        Assert.assertEquals(expected, FileIOUtils.readFile2List(path, 95, 200))
+        for (st in 1..100) {
+            Assert.assertEquals("line" + st, FileIOUtils.readFile2Iterator(File(path), st)!!.next())
+        }
+        Assert.assertEquals(100, FileIOUtils.readFile2Iterator(path)!!.asSequence().count())
     }
 
     @Test
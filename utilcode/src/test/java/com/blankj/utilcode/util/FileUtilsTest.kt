@@ -5,8 +5,11 @@ import com.blankj.utilcode.util.TestConfig.PATH_FILE
 import com.blankj.utilcode.util.TestConfig.PATH_TEMP
 import org.junit.Assert.*
 import org.junit.Test
+import java.io.BufferedOutputStream
 import java.io.File
 import java.io.FileFilter
+import java.io.FileOutputStream
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * <pre>
@@ -105,6 +108,26 @@ class FileUtilsTest {
         assertTrue(FileUtils.deleteDir(PATH_TEMP))
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun copyFileWithProgress() {
+        var current = 0L
+        var total = 0L
+        val progressListener = object : FileUtils.OnProgressListener {
+            override fun onProgress(current1: Long, total1: Long) {
+                current = current1
+                total = total1
+            }
+        }
+        assertTrue(FileUtils.copyFile(PATH_FILE + "GBK.txt", PATH_TEMP + "GBK.txt", mListener, progressListener))
+        assertEquals(File(PATH_FILE + "GBK.txt").length(), total)
+        assertEquals(total, current)
+        assertTrue(FileUtils.moveFile(PATH_TEMP + "GBK.txt", PATH_TEMP + "GBK1.txt", mListener, progressListener))
+        assertFalse(FileUtils.isFileExists(PATH_TEMP + "GBK.txt"))
+        assertEquals(total, current)
+        assertTrue(FileUtils.deleteDir(PATH_TEMP))
+    }
+
     @Test
     @Throws(Exception::class)
     fun moveDir() {
@@ -137,6 +160,27 @@ class FileUtilsTest {
         println(FileUtils.listFilesInDirWithFilter(PATH_FILE, mFilter, true)!!.toString())
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun walk() {
+        val count = AtomicInteger()
+        assertTrue(FileUtils.walk(File(PATH_FILE), object : FileUtils.FileVisitor() {
+            override fun visitFile(file: File) {
+                count.incrementAndGet()
+            }
+        }))
+        val files = FileUtils.listFilesInDir(PATH_FILE, true)!!.filter { it.isFile }
+        assertEquals(files.size, count.get())
+
+        val visitor = object : FileUtils.FileVisitor() {
+            override fun visitFile(file: File) {
+                cancel()
+            }
+        }
+        assertFalse(FileUtils.walk(File(PATH_FILE), visitor, 1))
+        assertTrue(visitor.isCancelled)
+    }
+
     @Test
     @Throws(Exception::class)
     fun getFileLastModified() {
@@ -156,6 +200,18 @@ class FileUtilsTest {
     @Throws(Exception::class)
     fun getFileLines() {
         assertEquals(7, FileUtils.getFileLines(PATH_FILE + "UTF8.txt").toLong())
+        assertEquals(7, FileUtils.getFileLines(File(PATH_FILE + "UTF8.txt"), 4).toLong())
+
+        // 跨多个分块的文件，并行统计结果与顺序统计一致
+        val big = File(PATH_TEMP + "lines.txt")
+        assertTrue(FileUtils.createFileByDeleteOldFile(big))
+        val line = ("FileUtils.getFileLines" + System.getProperty("line.separator")).toByteArray()
+        val out = BufferedOutputStream(FileOutputStream(big))
+        for (i in 0 until 1000000) out.write(line)
+        out.close()
+        assertEquals(1000001, FileUtils.getFileLines(big).toLong())
+        assertEquals(FileUtils.getFileLines(big).toLong(), FileUtils.getFileLines(big, 4).toLong())
+        assertTrue(big.delete())
     }
 
     @Test
@@ -174,6 +230,7 @@ class FileUtilsTest {
     @Throws(Exception::class)
     fun getDirLength() {
         println(FileUtils.getDirLength(PATH_FILE))
+        assertEquals(FileUtils.getDirLength(File(PATH_FILE)), FileUtils.getDirLength(File(PATH_FILE), 4))
     }
 
     @Test
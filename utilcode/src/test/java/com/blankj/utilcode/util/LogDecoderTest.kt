@@ -0,0 +1,69 @@
+package com.blankj.utilcode.util
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.text.SimpleDateFormat
+import java.util.*
+
+/**
+ * <pre>
+ * author: Blankj
+ * blog  : http://blankj.com
+ * time  : 2026/10/17
+ * desc  : LogDecoder 单元测试
+</pre> *
+ */
+class LogDecoderTest {
+
+    private val lineSep = System.getProperty("line.separator")
+    private val format = SimpleDateFormat("HH:mm:ss.SSS ")
+
+    @Test
+    @Throws(Exception::class)
+    fun decode() {
+        val out = ByteArrayOutputStream()
+        val time = 1500000000000L
+
+        val first = LogUtils.BinaryEncoder(out)
+        first.writeHeader()
+        first.writeInfo("info" + lineSep)
+        first.writeLog(time, LogUtils.D, "tag", "msg0", 1)
+        first.writeLog(time - 1000, LogUtils.E, "tag", "msg1", 1)
+        first.writeLog(time + 500, LogUtils.I, "其他", "中文", 2)
+        first.flush()
+
+        // 追加写入时重新写入文件头，tag id 从 0 重新分配
+        val second = LogUtils.BinaryEncoder(out)
+        second.writeHeader()
+        second.writeLog(time - 2000, LogUtils.W, "其他", "msg2", 2)
+        second.writeLog(time, LogUtils.A, "tag", "", 1)
+        second.close()
+
+        val sb = StringBuilder()
+        LogDecoder(ByteArrayInputStream(out.toByteArray())).decode(sb)
+        assertEquals("info" + lineSep
+                + line(time, "D/tag", "msg0")
+                + line(time - 1000, "E/tag", "msg1")
+                + line(time + 500, "I/其他", "中文")
+                + line(time - 2000, "W/其他", "msg2")
+                + line(time, "A/tag", ""),
+                sb.toString())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun zigzag() {
+        val values = longArrayOf(0, 1, -1, 63, -64, Long.MAX_VALUE, Long.MIN_VALUE)
+        for (value in values) {
+            assertEquals(value, LogDecoder.zigzagDecode(LogDecoder.zigzagEncode(value)))
+        }
+        assertEquals(1L, LogDecoder.zigzagEncode(-1))
+        assertEquals(2L, LogDecoder.zigzagEncode(1))
+    }
+
+    private fun line(time: Long, head: String, msg: String): String {
+        return format.format(Date(time)) + head + msg + lineSep
+    }
+}
@@ -0,0 +1,96 @@
+package com.blankj.utilcode.util
+
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * <pre>
+ * author: Blankj
+ * blog  : http://blankj.com
+ * time  : 2026/10/17
+ * desc  : LogUtils 单元测试
+</pre> *
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class LogUtilsTest {
+
+    private val lineSep = System.getProperty("line.separator")
+
+    @Before
+    fun setUp() {
+        TestUtils.init()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun formatJson() {
+        assertEquals(lines("{",
+                "    \"a\": 1,",
+                "    \"b\": [",
+                "        1,",
+                "        2",
+                "    ],",
+                "    \"c\": {},",
+                "    \"d\": []",
+                "}"),
+                LogUtils.formatJson(" {\"a\":1, \"b\" : [1,2],\"c\":{},\"d\":[ ]} "))
+        assertEquals("[]", LogUtils.formatJson("[]"))
+        assertEquals(lines("{",
+                "    \"k\": \"a\\\"b,{c}[d]:\\\\\",",
+                "    \"v\": \"\\u007b\"",
+                "}"),
+                LogUtils.formatJson("{\"k\":\"a\\\"b,{c}[d]:\\\\\",\"v\":\"\\u007b\"}"))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun formatJsonMalformed() {
+        val inputs = arrayOf("", "not json", "]", "{\"a\":1", "{\"a\":[1}", "{]",
+                "{\"a\":\"1}", "{\"a\":\"1\\\"}", "{} x", "[1]]")
+        for (input in inputs) {
+            assertEquals(input, LogUtils.formatJson(input))
+        }
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun formatXml() {
+        assertEquals(lines("<a>",
+                "    <b>text</b>",
+                "    <c/>",
+                "    <d x=\"1>2\"></d>",
+                "    <e>",
+                "        <f />",
+                "    </e>",
+                "</a>"),
+                LogUtils.formatXml("<a><b> text </b><c/><d x=\"1>2\"></d><e><f /></e></a>"))
+        assertEquals("<a/>", LogUtils.formatXml("<a/>"))
+        assertEquals("<a></a>", LogUtils.formatXml("<a></a>"))
+        assertEquals("<a>1 &lt; 2</a>", LogUtils.formatXml("<a>1 &lt; 2</a>"))
+        assertEquals(lines("<?xml version=\"1.0\"?>",
+                "<!-- <b> -->",
+                "<a>",
+                "    <![CDATA[</a>]]>",
+                "</a>"),
+                LogUtils.formatXml("<?xml version=\"1.0\"?><!-- <b> --><a><![CDATA[</a>]]></a>"))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun formatXmlMalformed() {
+        val inputs = arrayOf("", "<", "text", "<a", "<a>", "</a>", "<a><b></a>",
+                "<a></b>", "<a x=\"1></a>", "<!-- c", "<![CDATA[x")
+        for (input in inputs) {
+            assertEquals(input, LogUtils.formatXml(input))
+        }
+    }
+
+    private fun lines(vararg lines: String): String {
+        return lines.joinToString(lineSep)
+    }
+}
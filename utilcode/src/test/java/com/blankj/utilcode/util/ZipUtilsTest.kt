@@ -2,11 +2,16 @@ package com.blankj.utilcode.util
 
 import com.blankj.utilcode.util.TestConfig.PATH_TEMP
 import com.blankj.utilcode.util.TestConfig.PATH_ZIP
+import junit.framework.TestCase.assertEquals
+import junit.framework.TestCase.assertNull
 import junit.framework.TestCase.assertTrue
+import junit.framework.TestCase.fail
 import org.junit.After
 import org.junit.Before
 import org.junit.Test
+import java.io.File
 import java.util.*
+import java.util.zip.Deflater
 
 /**
  * <pre>
@@ -38,12 +43,61 @@ class ZipUtilsTest {
         assertTrue(ZipUtils.zipFiles(files, zipFiles))
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun zipFilesParallel() {
+        val files = Arrays.asList(File(PATH_ZIP + "test.txt"), File(PATH_ZIP))
+        assertTrue(ZipUtils.zipFiles(files, File(zipFiles), "测试zip", Deflater.BEST_COMPRESSION, 4))
+        val paths = ZipUtils.getFilesPath(zipFiles)!!
+        assertEquals(ZipUtils.getFilesPath(zipFile)!!.size + 1, paths.size)
+        assertTrue(paths.contains("test.txt"))
+        assertEquals("测试zip", ZipUtils.getComments(zipFiles)!![0])
+        val unzipped = ZipUtils.unzipFile(zipFiles, PATH_TEMP + "unzip")!!
+        assertEquals(FileIOUtils.readFile2String(PATH_ZIP + "test.txt"),
+                FileIOUtils.readFile2String(unzipped[0]))
+    }
+
     @Test
     @Throws(Exception::class)
     fun unzipFile() {
         println(ZipUtils.unzipFile(zipFile, PATH_TEMP))
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun unzipFileParallel() {
+        val destDir = File(PATH_TEMP + "unzip")
+        var progress = 0L
+        val files = ZipUtils.unzipFile(File(zipFile), destDir, null, 4, object : ZipUtils.OnProgressListener {
+            override fun onProgress(current: Long, total: Long) {
+                synchronized(this) {
+                    progress = Math.max(progress, current)
+                }
+                assertTrue(current <= total)
+            }
+        })!!
+        assertEquals(ZipUtils.getFilesPath(zipFile)!!.size, files.size)
+        for (file in files) assertTrue(file.exists())
+        assertEquals(FileUtils.getDirLength(destDir), progress)
+
+        val txtFiles = ZipUtils.unzipFile(File(zipFile), destDir, ZipUtils.globFilter("zip/*.txt"))!!
+        assertEquals(2, txtFiles.size)
+
+        // 工作线程出错时抛出第一个异常，未写完的文件被删除
+        val failDir = File(PATH_TEMP + "unzipFail")
+        try {
+            ZipUtils.unzipFile(File(zipFile), failDir, null, 4, object : ZipUtils.OnProgressListener {
+                override fun onProgress(current: Long, total: Long) {
+                    throw IllegalStateException("cancel")
+                }
+            })
+            fail()
+        } catch (e: IllegalStateException) {
+            assertEquals("cancel", e.message)
+        }
+        assertEquals(0, FileUtils.getDirLength(failDir))
+    }
+
     @Test
     @Throws(Exception::class)
     fun unzipFileByKeyword() {
@@ -62,6 +116,46 @@ class ZipUtilsTest {
         println(ZipUtils.getComments(zipFile))
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun getEntryInputStream() {
+        val expected = FileIOUtils.readFile2BytesByStream(PATH_ZIP + "test.txt")
+        val input = ZipUtils.getEntryInputStream(File(zipFile), "zip/test.txt")!!
+        assertTrue(Arrays.equals(expected, input.readBytes()))
+        input.close()
+        assertNull(ZipUtils.getEntryInputStream(File(zipFile), "zip/none.txt"))
+
+        val files = Arrays.asList(File(PATH_ZIP + "test.txt"))
+        assertTrue(ZipUtils.zipFiles(files, File(zipFiles), null, Deflater.NO_COMPRESSION, 1))
+        val buffer = ZipUtils.mapStoredEntry(File(zipFiles), "test.txt", 1)!!
+        val bytes = ByteArray(buffer.remaining())
+        buffer.get(bytes)
+        assertTrue(Arrays.equals(Arrays.copyOfRange(expected, 1, expected!!.size), bytes))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun updateZip() {
+        val txt = File(PATH_TEMP + "update.txt")
+        assertTrue(FileIOUtils.writeFileFromString(txt, "first"))
+        val files = Arrays.asList(File(PATH_ZIP), txt)
+        assertTrue(ZipUtils.updateZip(Arrays.asList(File(PATH_ZIP)), File(zipFiles)))
+        val count = ZipUtils.getFilesPath(zipFiles)!!.size
+
+        assertTrue(ZipUtils.updateZip(files, File(zipFiles)))
+        assertEquals(count + 1, ZipUtils.getFilesPath(zipFiles)!!.size)
+        val length = File(zipFiles).length()
+        assertTrue(ZipUtils.updateZip(files, File(zipFiles)))
+        assertEquals(length, File(zipFiles).length())
+
+        assertTrue(FileIOUtils.writeFileFromString(txt, "second"))
+        assertTrue(ZipUtils.updateZip(files, File(zipFiles)))
+        assertEquals(count + 1, ZipUtils.getFilesPath(zipFiles)!!.size)
+        val input = ZipUtils.getEntryInputStream(File(zipFiles), "update.txt")!!
+        assertEquals("second", String(input.readBytes()))
+        input.close()
+    }
+
     @After
     @Throws(Exception::class)
     fun tearDown() {